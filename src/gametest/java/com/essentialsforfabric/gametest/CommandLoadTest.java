@@ -0,0 +1,256 @@
+package com.essentialsforfabric.gametest;
+
+import com.essentialsforfabric.data.PersistenceQueue;
+import com.essentialsforfabric.data.PlayerDataLoader;
+import com.essentialsforfabric.metrics.LatencyHistogram;
+import com.essentialsforfabric.metrics.Metrics;
+import com.mojang.authlib.GameProfile;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.fabricmc.fabric.api.gametest.v1.FabricGameTest;
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.NetworkSide;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.test.GameTest;
+import net.minecraft.test.TestContext;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Headless load test: fake players run a weighted command mix and tick time percentiles are
+ * logged. Sized by the {@code essentials.loadtest.*} system properties, see the README.
+ */
+public class CommandLoadTest implements FabricGameTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger("essentials-for-fabric-loadtest");
+
+    private static final int JOIN_TIMEOUT_TICKS = 600;
+    // Has to fit inside the tick limit below together with the join timeout
+    private static final int MAX_TICKS = 20000;
+
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 24000)
+    public void commandStorm(TestContext context) {
+        LoadRun run = new LoadRun(context,
+            Integer.getInteger("essentials.loadtest.players", 200),
+            Math.min(MAX_TICKS, Integer.getInteger("essentials.loadtest.ticks", 600)),
+            Integer.getInteger("essentials.loadtest.commandsPerTick", 50),
+            System.getProperty("essentials.loadtest.mix", "home=35,sethome=15,back=20,tpa=15,tpaccept=15"),
+            Double.parseDouble(System.getProperty("essentials.loadtest.maxP99Mspt", "0")));
+        run.join();
+
+        // Everything is scheduled up front; runnables added while the test ticks may be skipped
+        for (int tick = 1; tick <= JOIN_TIMEOUT_TICKS + run.ticks + 1; tick++) {
+            context.runAtTick(tick, run::tick);
+        }
+    }
+
+    private enum Phase {
+        JOINING,
+        RUNNING,
+        DONE
+    }
+
+    private static class LoadRun {
+        private final TestContext context;
+        private final MinecraftServer server;
+        private final int playerCount;
+        private final int ticks;
+        private final int commandsPerTick;
+        private final double maxP99Mspt;
+        private final String[] mixNames;
+        private final int[] mixWeights;
+        private final int totalWeight;
+
+        private final Random random = new Random(42);
+        private final List<ServerPlayerEntity> players = new ArrayList<>();
+        private final List<EmbeddedChannel> channels = new ArrayList<>();
+        private final LatencyHistogram tickTimes = new LatencyHistogram();
+        private final Map<String, Long> storageBaseline = new HashMap<>();
+
+        private Phase phase = Phase.JOINING;
+        private int waited;
+        private int measured;
+        private boolean started;
+        private long commandsRun;
+        private long commandsFailed;
+        private long writesBaseline;
+        private long journalBaseline;
+        private long mutationsBaseline;
+        private long loadsBaseline;
+
+        LoadRun(TestContext context, int playerCount, int ticks, int commandsPerTick, String mix, double maxP99Mspt) {
+            this.context = context;
+            this.server = context.getWorld().getServer();
+            this.playerCount = playerCount;
+            this.ticks = ticks;
+            this.commandsPerTick = commandsPerTick;
+            this.maxP99Mspt = maxP99Mspt;
+
+            String[] entries = mix.split(",");
+            mixNames = new String[entries.length];
+            mixWeights = new int[entries.length];
+            int total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                String[] parts = entries[i].trim().split("=", 2);
+                mixNames[i] = parts[0];
+                total += parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+                mixWeights[i] = total;
+            }
+            totalWeight = total;
+        }
+
+        /**
+         * Connects the fake players like a real login would, so JOIN/DISCONNECT hooks, data loading
+         * and player selectors all behave as on a live server.
+         */
+        void join() {
+            ServerWorld world = context.getWorld();
+            BlockPos origin = context.getAbsolutePos(new BlockPos(1, 2, 1));
+            for (int i = 0; i < playerCount; i++) {
+                GameProfile profile = new GameProfile(UUID.nameUUIDFromBytes(("loadtest:" + i).getBytes()), "load" + i);
+                ServerPlayerEntity player = new ServerPlayerEntity(server, world, profile);
+                ClientConnection connection = new ClientConnection(NetworkSide.SERVERBOUND);
+                channels.add(new EmbeddedChannel(connection));
+                server.getPlayerManager().onPlayerConnect(connection, player);
+                player.teleport(world, origin.getX() + 0.5, origin.getY(), origin.getZ() + 0.5, 0, 0);
+                players.add(player);
+            }
+        }
+
+        void tick() {
+            switch (phase) {
+                case JOINING -> waitForLoads();
+                case RUNNING -> run();
+                case DONE -> {
+                }
+            }
+        }
+
+        private void waitForLoads() {
+            for (ServerPlayerEntity player : players) {
+                if (PlayerDataLoader.isLoading(player.getUuid())) {
+                    if (++waited >= JOIN_TIMEOUT_TICKS) {
+                        fail("Player data for " + players.size() + " players did not load within " + JOIN_TIMEOUT_TICKS + " ticks");
+                    }
+                    return;
+                }
+            }
+
+            // Give everyone a home and a /back location before measuring anything
+            for (ServerPlayerEntity player : players) {
+                execute(player, "sethome base");
+                execute(player, "home base");
+            }
+            commandsRun = 0;
+            commandsFailed = 0;
+            writesBaseline = PersistenceQueue.getWritesCompleted();
+            journalBaseline = PersistenceQueue.getJournalRecords();
+            mutationsBaseline = PersistenceQueue.getMutations();
+            loadsBaseline = PlayerDataLoader.getLoads();
+            for (Map.Entry<String, LatencyHistogram> entry : Metrics.getStorage()) {
+                storageBaseline.put(entry.getKey(), entry.getValue().getCount());
+            }
+            LOGGER.info("{} players joined after {} ticks, running {} ticks at {} commands per tick", players.size(), waited, ticks, commandsPerTick);
+            phase = Phase.RUNNING;
+        }
+
+        private void run() {
+            // The previous tick is the one the last batch of commands ran in
+            if (started) {
+                tickTimes.record(server.lastTickLengths[(server.getTicks() - 1) % 100]);
+                measured++;
+            }
+            started = true;
+            if (measured >= ticks) {
+                finish();
+                return;
+            }
+
+            for (int i = 0; i < commandsPerTick; i++) {
+                ServerPlayerEntity player = players.get(random.nextInt(players.size()));
+                execute(player, pickCommand(player));
+            }
+            for (EmbeddedChannel channel : channels) {
+                channel.releaseOutbound();
+            }
+        }
+
+        private String pickCommand(ServerPlayerEntity player) {
+            int roll = random.nextInt(totalWeight);
+            int index = 0;
+            while (mixWeights[index] <= roll) {
+                index++;
+            }
+            return switch (mixNames[index]) {
+                case "home" -> "home base";
+                case "sethome" -> "sethome base";
+                case "tpa", "tpahere" -> mixNames[index] + " " + players.get(random.nextInt(players.size())).getGameProfile().getName();
+                default -> mixNames[index];
+            };
+        }
+
+        private void execute(ServerPlayerEntity player, String command) {
+            commandsRun++;
+            if (server.getCommandManager().executeWithPrefix(player.getCommandSource(), command) <= 0) {
+                commandsFailed++;
+            }
+        }
+
+        private void finish() {
+            phase = Phase.DONE;
+            double p99 = tickTimes.getPercentileNanos(0.99) / 1_000_000.0;
+
+            LOGGER.info("Tick time over {} ticks: p50 {} ms, p90 {} ms, p99 {} ms, max {} ms", tickTimes.getCount(),
+                millis(tickTimes.getPercentileNanos(0.5)), millis(tickTimes.getPercentileNanos(0.9)),
+                millis(tickTimes.getPercentileNanos(0.99)), millis(tickTimes.getMaxNanos()));
+            LOGGER.info("Commands: {} run, {} failed", commandsRun, commandsFailed);
+            for (Map.Entry<String, LatencyHistogram> entry : Metrics.getCommands()) {
+                LatencyHistogram histogram = entry.getValue();
+                LOGGER.info("  /{}: {} calls, avg {} ms, p99 {} ms", entry.getKey(), histogram.getCount(),
+                    millis(histogram.getAverageNanos()), millis(histogram.getPercentileNanos(0.99)));
+            }
+            LOGGER.info("I/O: {} mutations, {} journal records, {} writes completed, {} loads",
+                PersistenceQueue.getMutations() - mutationsBaseline, PersistenceQueue.getJournalRecords() - journalBaseline,
+                PersistenceQueue.getWritesCompleted() - writesBaseline, PlayerDataLoader.getLoads() - loadsBaseline);
+            for (Map.Entry<String, LatencyHistogram> entry : Metrics.getStorage()) {
+                LatencyHistogram histogram = entry.getValue();
+                LOGGER.info("  {}: {} calls, p99 {} ms", entry.getKey(),
+                    histogram.getCount() - storageBaseline.getOrDefault(entry.getKey(), 0L), millis(histogram.getPercentileNanos(0.99)));
+            }
+
+            if (maxP99Mspt > 0 && p99 > maxP99Mspt) {
+                fail(String.format("p99 tick time %.2f ms is above the %.2f ms limit", p99, maxP99Mspt));
+            }
+            disconnect();
+            context.complete();
+        }
+
+        private void disconnect() {
+            for (ServerPlayerEntity player : players) {
+                player.networkHandler.onDisconnected(Text.literal("Load test finished"));
+            }
+            for (EmbeddedChannel channel : channels) {
+                channel.finishAndReleaseAll();
+            }
+        }
+
+        private void fail(String message) {
+            disconnect();
+            phase = Phase.DONE;
+            context.throwGameTestException(message);
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.2f", nanos / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.util.TextPages;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.text.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Rendering the /warps pages after a warp change, and serializing one page the way it is sent
+ * to a client every time /warps runs.
+ */
+@State(Scope.Thread)
+public class WarpPagesBenchmark {
+    private static final String[] WORLDS = {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+
+    @Param({"100", "1000", "10000"})
+    public int warpCount;
+
+    private Map<String, PlayerDataManager.WarpData> warps;
+    private TextPages pages;
+
+    @Setup
+    public void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        Random random = new Random(42);
+        warps = new HashMap<>();
+        for (int i = 0; i < warpCount; i++) {
+            warps.put("warp" + i, new PlayerDataManager.WarpData(WORLDS[random.nextInt(WORLDS.length)],
+                random.nextDouble() * 20000 - 10000, random.nextDouble() * 320 - 64, random.nextDouble() * 20000 - 10000, 0, 0));
+        }
+        pages = WarpCommands.renderWarpPages(warps, 10);
+    }
+
+    @Benchmark
+    public TextPages render() {
+        return WarpCommands.renderWarpPages(warps, 10);
+    }
+
+    @Benchmark
+    public String serializePage() {
+        return Text.Serializer.toJson(pages.getPage(pages.getPageCount() / 2 + 1));
+    }
+}
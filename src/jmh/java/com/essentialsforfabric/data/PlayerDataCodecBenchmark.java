@@ -0,0 +1,74 @@
+package com.essentialsforfabric.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loading and saving a player snapshot with the Gson and binary codecs.
+ */
+@State(Scope.Thread)
+public class PlayerDataCodecBenchmark {
+    private static final String[] WORLDS = {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+    private static final int SAMPLES = 64;
+
+    @Param({"1", "10", "100"})
+    public int homes;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private PlayerDataCodec codec;
+    private List<PlayerDataManager.PlayerData> samples;
+    private byte[][] encoded;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = format.equals("json") ? PlayerDataCodec.JSON : PlayerDataCodec.BINARY;
+        samples = createSamples(homes);
+        encoded = new byte[samples.size()][];
+        for (int i = 0; i < samples.size(); i++) {
+            encoded[i] = codec.encodePlayerData(samples.get(i));
+        }
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        return codec.encodePlayerData(samples.get(next++ & (samples.size() - 1)));
+    }
+
+    @Benchmark
+    public PlayerDataManager.PlayerData load() throws IOException {
+        return codec.decodePlayerData(encoded[next++ & (encoded.length - 1)]);
+    }
+
+    static List<PlayerDataManager.PlayerData> createSamples(int homesPerPlayer) {
+        Random random = new Random(42);
+        List<PlayerDataManager.PlayerData> samples = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            PlayerDataManager.PlayerData data = new PlayerDataManager.PlayerData();
+            data.lastLocation = randomLocation(random);
+            for (int h = 0; h < homesPerPlayer; h++) {
+                data.homes.put("home" + h, randomLocation(random));
+            }
+            samples.add(data);
+        }
+        return samples;
+    }
+
+    private static PlayerDataManager.LocationData randomLocation(Random random) {
+        return new PlayerDataManager.LocationData(
+            WORLDS[random.nextInt(WORLDS.length)],
+            random.nextDouble() * 20000 - 10000, random.nextDouble() * 320 - 64, random.nextDouble() * 20000 - 10000,
+            random.nextFloat() * 360 - 180, random.nextFloat() * 180 - 90
+        );
+    }
+}
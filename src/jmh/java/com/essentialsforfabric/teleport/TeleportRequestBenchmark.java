@@ -0,0 +1,58 @@
+package com.essentialsforfabric.teleport;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * /tpa send and accept from several threads at once against a shared set of targets, while one
+ * more thread keeps advancing the expiry wheel.
+ */
+@State(Scope.Group)
+public class TeleportRequestBenchmark {
+    private static final int PLAYERS = 64;
+
+    private final UUID[] players = new UUID[PLAYERS];
+    private long tick;
+
+    @Setup
+    public void setup() {
+        // Nothing should expire while the benchmark runs, which would need a server to notify
+        EssentialsConfig.get().tpaTimeoutTicks = Integer.MAX_VALUE / 2;
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new UUID(0, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        TeleportRequestManager.clear();
+    }
+
+    @Benchmark
+    @Group("requests")
+    @GroupThreads(3)
+    public TeleportRequestManager.TeleportRequest sendAndAccept() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int requester = random.nextInt(PLAYERS);
+        int target = (requester + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+
+        TeleportRequestManager.send(players[requester], "requester", players[target], "target", TeleportRequestManager.Type.TPA);
+        return TeleportRequestManager.take(players[target], players[requester]);
+    }
+
+    @Benchmark
+    @Group("requests")
+    @GroupThreads(1)
+    public void tick() {
+        TeleportRequestManager.advance(null, ++tick);
+    }
+}
@@ -0,0 +1,54 @@
+package com.essentialsforfabric.util;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.command.CommandOutput;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.Vec2f;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Permission checks without a permissions mod, by compiled id and by node name, for a regular
+ * player and an operator.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class PermissionUtilBenchmark {
+    private ServerCommandSource player;
+    private ServerCommandSource operator;
+    private int homeId;
+
+    @Setup
+    public void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        player = source(0);
+        operator = source(4);
+        homeId = PermissionUtil.register("essentials.home", 0);
+    }
+
+    private static ServerCommandSource source(int level) {
+        return new ServerCommandSource(CommandOutput.DUMMY, Vec3d.ZERO, Vec2f.ZERO, null, level, "benchmark", Text.literal("benchmark"), null, null);
+    }
+
+    @Benchmark
+    public boolean playerById() {
+        return PermissionUtil.hasPermission(player, homeId);
+    }
+
+    @Benchmark
+    public boolean playerByName() {
+        return PermissionUtil.hasPermission(player, "essentials.setwarp");
+    }
+
+    @Benchmark
+    public boolean operatorById() {
+        return PermissionUtil.hasPermission(operator, homeId);
+    }
+}
@@ -2,37 +2,147 @@ package com.essentialsforfabric;
 
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.entity.event.v1.ServerLivingEntityEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerLoginConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Uuids;
+import com.essentialsforfabric.afk.AfkTracker;
 import com.essentialsforfabric.commands.*;
+import com.essentialsforfabric.config.EssentialsConfig;
+import com.essentialsforfabric.data.PersistenceQueue;
+import com.essentialsforfabric.data.PlayerDataLoader;
 import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.jobs.JobExecutor;
+import com.essentialsforfabric.kits.KitManager;
+import com.essentialsforfabric.metrics.CommandMetrics;
+import com.essentialsforfabric.metrics.MetricsHttpServer;
+import com.essentialsforfabric.mixin.ServerLoginNetworkHandlerAccessor;
+import com.essentialsforfabric.teleport.RandomTeleportPool;
+import com.essentialsforfabric.teleport.TeleportRequestManager;
+import com.essentialsforfabric.teleport.TeleportScheduler;
+import com.essentialsforfabric.util.FabricPermissionsProvider;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.CommandDispatcher;
+
+import java.util.UUID;
 
 public class EssentialsForFabric implements ModInitializer {
     public static final String MOD_ID = "essentials-for-fabric";
 
     @Override
     public void onInitialize() {
+        EssentialsConfig.load();
+
+        if (FabricLoader.getInstance().isModLoaded(FabricPermissionsProvider.MOD_ID)) {
+            PermissionUtil.setProvider(new FabricPermissionsProvider());
+        }
+
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
-            HealCommand.register(dispatcher);
-            FeedCommand.register(dispatcher);
-            FlyCommand.register(dispatcher);
-            GodCommand.register(dispatcher);
-            SpeedCommand.register(dispatcher);
-            GamemodeCommands.register(dispatcher);
-            TeleportCommands.register(dispatcher);
-            RepairCommand.register(dispatcher);
-            SpawnCommand.register(dispatcher);
-            HomeCommands.register(dispatcher);
-            BackCommand.register(dispatcher);
-            WarpCommands.register(dispatcher);
+            // Registered separately first so every command can be timed on its way into the real dispatcher
+            CommandDispatcher<ServerCommandSource> commands = new CommandDispatcher<>();
+            HealCommand.register(commands);
+            FeedCommand.register(commands);
+            FlyCommand.register(commands);
+            GodCommand.register(commands);
+            SpeedCommand.register(commands);
+            GamemodeCommands.register(commands);
+            TeleportCommands.register(commands);
+            RepairCommand.register(commands);
+            SpawnCommand.register(commands);
+            HomeCommands.register(commands);
+            BackCommand.register(commands);
+            WarpCommands.register(commands);
+            RandomTeleportCommand.register(commands);
+            KitCommand.register(commands);
+            AfkCommand.register(commands);
+            EssentialsCommand.register(commands);
+            CommandMetrics.register(commands, dispatcher);
+        });
+
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            PersistenceQueue.start();
+            PlayerDataManager.start(server);
+            // Registries are complete by now, including items added by other mods
+            KitManager.load();
+            MetricsHttpServer.start();
         });
 
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
             PlayerDataManager.loadWarps(server);
         });
 
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            // Players are only disconnected after this event, too late for the queue
+            PlayerDataManager.saveAllBackHistories();
+            PersistenceQueue.shutdown(server);
+            PlayerDataLoader.shutdown();
+            PlayerDataManager.clear();
+            TeleportRequestManager.clear();
+            TeleportScheduler.clear();
+            RandomTeleportPool.clear();
+            PlayerBatch.clear();
+            AfkTracker.clear();
+            JobExecutor.clear();
+            MetricsHttpServer.stop();
+        });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            PersistenceQueue.tick(server);
+            PlayerDataManager.tick(server);
+            PermissionUtil.tick(server);
+            TeleportRequestManager.tick(server);
+            TeleportScheduler.tick(server);
+            AfkTracker.tick(server);
+            RandomTeleportPool.tick(server);
+            PlayerBatch.tick(server);
+            // Last, so jobs only get the time the rest of the tick left over
+            JobExecutor.tick(server);
+        });
+
+        ServerLivingEntityEvents.ALLOW_DAMAGE.register((entity, source, amount) -> {
+            if (entity instanceof ServerPlayerEntity player) {
+                TeleportScheduler.onDamage(player);
+            }
+            return true;
+        });
+
+        ServerLivingEntityEvents.AFTER_DEATH.register((entity, source) -> {
+            if (entity instanceof ServerPlayerEntity player) {
+                PlayerDataManager.recordDeath(player);
+            }
+        });
+
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
+            AfkTracker.onRespawn(newPlayer);
+        });
+
+        ServerLoginConnectionEvents.QUERY_START.register((handler, server, sender, synchronizer) -> {
+            // Start reading the player's data while the rest of the login handshake runs
+            GameProfile profile = ((ServerLoginNetworkHandlerAccessor) handler).getProfile();
+            if (profile != null) {
+                UUID playerId = profile.getId() != null ? profile.getId() : Uuids.getOfflinePlayerUuid(profile.getName());
+                PlayerDataManager.prefetchPlayerData(playerId);
+            }
+        });
+
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
-            PlayerDataManager.loadPlayerData(server, handler.player.getUuid());
+            PlayerDataManager.onJoin(handler.player);
+            AfkTracker.onJoin(handler.player);
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            PlayerDataManager.onDisconnect(server, handler.player.getUuid());
+            PermissionUtil.invalidate(handler.player.getUuid());
+            TeleportRequestManager.onDisconnect(server, handler.player.getUuid());
+            TeleportScheduler.onDisconnect(handler.player.getUuid());
+            AfkTracker.onDisconnect(handler.player.getUuid());
         });
     }
-}
\ No newline at end of file
+}
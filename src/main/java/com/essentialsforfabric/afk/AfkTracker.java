@@ -0,0 +1,202 @@
+package com.essentialsforfabric.afk;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import com.essentialsforfabric.util.PermissionUtil;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Works out which players are away from their keyboard. Each tick samples only a share of the
+ * slots, so everyone is checked once per {@code afkSampleIntervalTicks}.
+ */
+public class AfkTracker {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int KICK_EXEMPT = PermissionUtil.register("essentials.afk.kickexempt", 2);
+
+    private static final Object2IntOpenHashMap<UUID> slots = new Object2IntOpenHashMap<>();
+    private static ServerPlayerEntity[] players = new ServerPlayerEntity[INITIAL_CAPACITY];
+    private static double[] x = new double[INITIAL_CAPACITY];
+    private static double[] y = new double[INITIAL_CAPACITY];
+    private static double[] z = new double[INITIAL_CAPACITY];
+    private static float[] yaw = new float[INITIAL_CAPACITY];
+    private static float[] pitch = new float[INITIAL_CAPACITY];
+    private static long[] lastActiveTick = new long[INITIAL_CAPACITY];
+    private static boolean[] afk = new boolean[INITIAL_CAPACITY];
+    private static int size;
+    // Read by the metrics endpoint off the server thread
+    private static volatile int afkCount;
+    private static long currentTick;
+
+    static {
+        slots.defaultReturnValue(-1);
+    }
+
+    public static void onJoin(ServerPlayerEntity player) {
+        int slot = slots.getInt(player.getUuid());
+        if (slot < 0) {
+            if (size == players.length) {
+                grow(size * 2);
+            }
+            slot = size++;
+            slots.put(player.getUuid(), slot);
+        } else if (afk[slot]) {
+            afk[slot] = false;
+            afkCount--;
+        }
+        players[slot] = player;
+        sample(slot, player);
+        lastActiveTick[slot] = currentTick;
+    }
+
+    /**
+     * Points the slot at the new player entity, which replaces the old one on respawn.
+     */
+    public static void onRespawn(ServerPlayerEntity player) {
+        int slot = slots.getInt(player.getUuid());
+        if (slot >= 0) {
+            players[slot] = player;
+        }
+    }
+
+    public static void onDisconnect(UUID playerId) {
+        int slot = slots.removeInt(playerId);
+        if (slot < 0) {
+            return;
+        }
+        if (afk[slot]) {
+            afkCount--;
+        }
+
+        int last = --size;
+        if (slot != last) {
+            players[slot] = players[last];
+            x[slot] = x[last];
+            y[slot] = y[last];
+            z[slot] = z[last];
+            yaw[slot] = yaw[last];
+            pitch[slot] = pitch[last];
+            lastActiveTick[slot] = lastActiveTick[last];
+            afk[slot] = afk[last];
+            slots.put(players[slot].getUuid(), slot);
+        }
+        players[last] = null;
+        afk[last] = false;
+    }
+
+    public static boolean isAfk(UUID playerId) {
+        int slot = slots.getInt(playerId);
+        return slot >= 0 && afk[slot];
+    }
+
+    /**
+     * Marks a player AFK or back, as /afk does. They stay AFK until they next move.
+     */
+    public static void setAfk(ServerPlayerEntity player, boolean away) {
+        int slot = slots.getInt(player.getUuid());
+        if (slot < 0) {
+            return;
+        }
+        // Movement is measured from here, not from wherever the last sample caught them
+        sample(slot, player);
+        if (!away) {
+            lastActiveTick[slot] = currentTick;
+        }
+        update(slot, away);
+    }
+
+    public static void tick(MinecraftServer server) {
+        currentTick = server.getTicks();
+        EssentialsConfig config = EssentialsConfig.get();
+        int interval = Math.max(1, config.afkSampleIntervalTicks);
+        List<ServerPlayerEntity> idle = null;
+
+        for (int slot = (int) (currentTick % interval); slot < size; slot += interval) {
+            ServerPlayerEntity player = players[slot];
+            if (player.getX() != x[slot] || player.getY() != y[slot] || player.getZ() != z[slot]
+                || player.getYaw() != yaw[slot] || player.getPitch() != pitch[slot]) {
+                sample(slot, player);
+                lastActiveTick[slot] = currentTick;
+                if (afk[slot]) {
+                    update(slot, false);
+                }
+                continue;
+            }
+
+            long idleTicks = currentTick - lastActiveTick[slot];
+            if (!afk[slot] && config.afkTimeoutTicks > 0 && idleTicks >= config.afkTimeoutTicks) {
+                update(slot, true);
+            }
+            if (afk[slot] && config.afkKickTicks > 0 && idleTicks >= config.afkKickTicks) {
+                if (idle == null) {
+                    idle = new ArrayList<>();
+                }
+                idle.add(player);
+            }
+        }
+
+        // Kicking disconnects straight away, which frees slots, so it waits until the walk is done
+        if (idle != null) {
+            for (ServerPlayerEntity player : idle) {
+                if (!PermissionUtil.hasPermission(player.getCommandSource(), KICK_EXEMPT)) {
+                    player.networkHandler.disconnect(Text.literal("You have been kicked for being AFK"));
+                }
+            }
+        }
+    }
+
+    private static void sample(int slot, ServerPlayerEntity player) {
+        x[slot] = player.getX();
+        y[slot] = player.getY();
+        z[slot] = player.getZ();
+        yaw[slot] = player.getYaw();
+        pitch[slot] = player.getPitch();
+    }
+
+    private static void update(int slot, boolean away) {
+        if (afk[slot] == away) {
+            return;
+        }
+        afk[slot] = away;
+        afkCount += away ? 1 : -1;
+
+        ServerPlayerEntity player = players[slot];
+        String name = player.getGameProfile().getName();
+        player.getServer().getPlayerManager().broadcast(
+            Text.literal(away ? name + " is now AFK" : name + " is no longer AFK").formatted(Formatting.GRAY), false);
+        if (EssentialsConfig.get().afkIgnoreSleep) {
+            // The sleep count only refreshes when someone gets in or out of bed otherwise
+            player.getServerWorld().updateSleepingPlayers();
+        }
+    }
+
+    private static void grow(int capacity) {
+        players = Arrays.copyOf(players, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        yaw = Arrays.copyOf(yaw, capacity);
+        pitch = Arrays.copyOf(pitch, capacity);
+        lastActiveTick = Arrays.copyOf(lastActiveTick, capacity);
+        afk = Arrays.copyOf(afk, capacity);
+    }
+
+    public static int getAfkCount() {
+        return afkCount;
+    }
+
+    public static void clear() {
+        slots.clear();
+        Arrays.fill(players, null);
+        Arrays.fill(afk, false);
+        size = 0;
+        afkCount = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.afk.AfkTracker;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+public class AfkCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("afk")
+            .requires(PermissionUtil.require("essentials.afk", 0))
+            .executes(AfkCommand::toggleAfk));
+    }
+
+    private static int toggleAfk(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        // The state change is broadcast to everyone, the player included
+        AfkTracker.setAfk(player, !AfkTracker.isAfk(player.getUuid()));
+        return 1;
+    }
+}
@@ -1,8 +1,12 @@
 package com.essentialsforfabric.commands;
 
+import com.essentialsforfabric.data.LocationHistory;
 import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.teleport.ChunkPreloader;
+import com.essentialsforfabric.teleport.TeleportScheduler;
 import com.essentialsforfabric.util.PermissionUtil;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.registry.RegistryKey;
@@ -18,20 +22,52 @@ import net.minecraft.world.World;
 public class BackCommand {
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("back")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.back", 0))
-            .executes(context -> back(context)));
+            .requires(PermissionUtil.require("essentials.back", 0))
+            .executes(context -> back(context, 1))
+            .then(CommandManager.literal("death")
+                .executes(context -> backToDeath(context)))
+            .then(CommandManager.argument("steps", IntegerArgumentType.integer(1))
+                .executes(context -> back(context, IntegerArgumentType.getInteger(context, "steps")))));
     }
 
-    private static int back(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    private static int back(CommandContext<ServerCommandSource> context, int steps) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
-        PlayerDataManager.LocationData lastLocation = PlayerDataManager.getLastLocation(player.getUuid());
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
+        LocationHistory history = PlayerDataManager.getBackHistory(player.getUuid());
 
-        if (lastLocation == null) {
+        if (history.size() == 0) {
             context.getSource().sendError(Text.literal("No previous location found"));
             return 0;
         }
+        if (steps > history.size()) {
+            context.getSource().sendError(Text.literal("Only " + history.size() + " previous locations are remembered"));
+            return 0;
+        }
+
+        return teleportBack(context, player, history.get(steps - 1), "Teleported to previous location");
+    }
+
+    private static int backToDeath(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
+        LocationHistory history = PlayerDataManager.getBackHistory(player.getUuid());
+        int index = history.indexOf(LocationHistory.DEATH);
+
+        if (index < 0) {
+            context.getSource().sendError(Text.literal("No death location found"));
+            return 0;
+        }
+
+        return teleportBack(context, player, history.get(index), "Teleported to where you last died");
+    }
 
-        PlayerDataManager.setLastLocation(player);
+    private static int teleportBack(CommandContext<ServerCommandSource> context, ServerPlayerEntity player, PlayerDataManager.LocationData lastLocation, String message) {
 
         RegistryKey<World> worldKey = RegistryKey.of(RegistryKeys.WORLD, new Identifier(lastLocation.world));
         ServerWorld world = context.getSource().getServer().getWorld(worldKey);
@@ -41,9 +77,12 @@ public class BackCommand {
             return 0;
         }
 
-        player.teleport(world, lastLocation.x, lastLocation.y, lastLocation.z, lastLocation.yaw, lastLocation.pitch);
-        context.getSource().sendFeedback(() -> Text.literal("Teleported to previous location"), false);
+        boolean scheduled = TeleportScheduler.schedule(player, "back", () -> ChunkPreloader.preload(player, world, lastLocation.x, lastLocation.z, () -> {
+            PlayerDataManager.setLastLocation(player);
+            player.teleport(world, lastLocation.x, lastLocation.y, lastLocation.z, lastLocation.yaw, lastLocation.pitch);
+            context.getSource().sendFeedback(() -> Text.literal(message), false);
+        }));
 
-        return 1;
+        return scheduled ? 1 : 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.data.EssentialsXImportJob;
+import com.essentialsforfabric.data.FileStorageBackend;
+import com.essentialsforfabric.data.PersistenceQueue;
+import com.essentialsforfabric.data.PlayerCatalog;
+import com.essentialsforfabric.data.PlayerDataCodec;
+import com.essentialsforfabric.data.PlayerDataCache;
+import com.essentialsforfabric.data.PlayerDataLoader;
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.data.StorageBackend;
+import com.essentialsforfabric.data.StorageMigrationJob;
+import com.essentialsforfabric.jobs.JobExecutor;
+import com.essentialsforfabric.kits.KitManager;
+import com.essentialsforfabric.metrics.LatencyHistogram;
+import com.essentialsforfabric.metrics.Metrics;
+import com.essentialsforfabric.teleport.ChunkPreloader;
+import com.essentialsforfabric.teleport.RandomTeleportPool;
+import com.essentialsforfabric.teleport.TeleportScheduler;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.WorldSavePath;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class EssentialsCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("essentials")
+            .requires(PermissionUtil.require("essentials.admin", 3))
+            .then(CommandManager.literal("storage")
+                .executes(EssentialsCommand::storageStats)
+                .then(CommandManager.literal("migrate")
+                    .executes(EssentialsCommand::storageMigrate))
+                .then(CommandManager.literal("homes")
+                    .then(CommandManager.argument("world", StringArgumentType.greedyString())
+                        .executes(context -> storageHomes(context, StringArgumentType.getString(context, "world"))))))
+            .then(CommandManager.literal("import")
+                .then(CommandManager.literal("essentialsx")
+                    .then(CommandManager.argument("path", StringArgumentType.greedyString())
+                        .executes(context -> importEssentialsX(context, StringArgumentType.getString(context, "path"))))))
+            .then(CommandManager.literal("kits")
+                .then(CommandManager.literal("reload")
+                    .executes(EssentialsCommand::reloadKits)))
+            .then(CommandManager.literal("cache")
+                .executes(EssentialsCommand::cacheStats))
+            .then(CommandManager.literal("teleports")
+                .executes(EssentialsCommand::teleportStats))
+            .then(CommandManager.literal("stats")
+                .executes(EssentialsCommand::latencyStats))
+            .then(CommandManager.literal("jobs")
+                .executes(EssentialsCommand::listJobs)
+                .then(CommandManager.literal("pause")
+                    .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                        .executes(context -> controlJob(context, "pause"))))
+                .then(CommandManager.literal("resume")
+                    .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                        .executes(context -> controlJob(context, "resume"))))
+                .then(CommandManager.literal("cancel")
+                    .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                        .executes(context -> controlJob(context, "cancel"))))));
+    }
+
+    private static int storageStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        source.sendFeedback(() -> Text.literal("Storage queue:").formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Text.literal(" Queue depth: " + PersistenceQueue.getQueueDepth() + "/" + PersistenceQueue.getQueueCapacity()
+            + " (peak " + PersistenceQueue.getPeakQueueDepth() + ")").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Dirty stores: " + PersistenceQueue.getDirtyCount()).formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Mutations: " + PersistenceQueue.getMutations()
+            + " (coalesced " + PersistenceQueue.getCoalesced() + ")").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Batches: " + PersistenceQueue.getWritesCompleted() + "/" + PersistenceQueue.getWritesSubmitted()
+            + " (failed " + PersistenceQueue.getWritesFailed() + ")").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Journal records: " + PersistenceQueue.getJournalRecords()
+            + " (compactions " + PersistenceQueue.getCompactions() + ")").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Deferred flushes: " + PersistenceQueue.getDeferredFlushes()).formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Format: " + PlayerDataCodec.active().extension().substring(1)
+            + " (" + FileStorageBackend.getMigratedFiles() + " files migrated)").formatted(Formatting.GRAY), false);
+        StorageBackend storage = PlayerDataManager.getStorage();
+        if (storage != null) {
+            source.sendFeedback(() -> Text.literal(" Backend: " + storage.describe() + ", "
+                + storage.getMigratedCount() + " players migrated").formatted(Formatting.GRAY), false);
+        }
+        PlayerCatalog catalog = PlayerDataManager.getCatalog();
+        if (catalog != null) {
+            source.sendFeedback(() -> Text.literal(" Player catalog: " + catalog.size() + " players").formatted(Formatting.GRAY), false);
+        }
+
+        return 1;
+    }
+
+    private static int storageMigrate(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        StorageBackend storage = PlayerDataManager.getStorage();
+        if (storage == null || !storage.supportsMigration()) {
+            source.sendError(Text.literal("Set storageBackend to \"region\" or \"sql\" in the config and restart before migrating"));
+            return 0;
+        }
+
+        MinecraftServer server = source.getServer();
+        // Listed on the I/O thread, so files being moved by writes at the same time are never half seen
+        PersistenceQueue.submitRead(storage::listLegacyPlayers).whenCompleteAsync((players, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                source.sendError(Text.literal("Migration failed: " + error.getMessage()));
+                return;
+            }
+            if (players.isEmpty()) {
+                source.sendFeedback(() -> Text.literal("No player files left to migrate").formatted(Formatting.GRAY), false);
+                return;
+            }
+            JobExecutor.JobHandle job = JobExecutor.submit(new StorageMigrationJob(storage, players), source);
+            source.sendFeedback(() -> Text.literal("Migrating " + players.size() + " players into the " + storage.describe()
+                + " backend in the background as job #" + job.id).formatted(Formatting.GRAY), true);
+        }, server);
+
+        return 1;
+    }
+
+    private static int reloadKits(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        KitManager.load();
+        int count = KitManager.getAll().size();
+        source.sendFeedback(() -> Text.literal("Loaded " + count + " kits"), true);
+        for (String problem : KitManager.getProblems()) {
+            source.sendError(Text.literal(problem));
+        }
+        return count;
+    }
+
+    private static int importEssentialsX(CommandContext<ServerCommandSource> context, String path) {
+        ServerCommandSource source = context.getSource();
+        StorageBackend storage = PlayerDataManager.getStorage();
+        if (storage == null) {
+            source.sendError(Text.literal("Storage is not available"));
+            return 0;
+        }
+        for (JobExecutor.JobHandle job : JobExecutor.getJobs()) {
+            JobExecutor.State state = job.getState();
+            if (job.job instanceof EssentialsXImportJob && (state == JobExecutor.State.RUNNING || state == JobExecutor.State.PAUSED)) {
+                source.sendError(Text.literal("An import is already running as job #" + job.id));
+                return 0;
+            }
+        }
+
+        Path folder;
+        try {
+            folder = Path.of(path).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            source.sendError(Text.literal("Invalid path: " + path));
+            return 0;
+        }
+        if (!Files.isDirectory(folder.resolve("userdata")) && !Files.isDirectory(folder.resolve("warps"))) {
+            source.sendError(Text.literal("No userdata or warps folder in " + folder));
+            return 0;
+        }
+
+        Path checkpoint = source.getServer().getSavePath(WorldSavePath.ROOT).resolve("essentials").resolve("essentialsx-import.checkpoint");
+        JobExecutor.JobHandle job = JobExecutor.submit(new EssentialsXImportJob(folder, checkpoint, storage), source);
+        source.sendFeedback(() -> Text.literal("Importing EssentialsX data from " + folder + " in the background as job #" + job.id)
+            .formatted(Formatting.GRAY), true);
+        return 1;
+    }
+
+    private static int storageHomes(CommandContext<ServerCommandSource> context, String world) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        StorageBackend storage = PlayerDataManager.getStorage();
+        if (storage == null) {
+            source.sendError(Text.literal("Storage is not available"));
+            return 0;
+        }
+        String worldId = world.contains(":") ? world : "minecraft:" + world;
+        if (!storage.hasHomeIndex()) {
+            source.sendFeedback(() -> Text.literal("This backend has no home index, scanning every player's data...").formatted(Formatting.GRAY), false);
+        }
+
+        // Queued behind pending writes on the I/O thread so the scan sees them and never races an append
+        PersistenceQueue.flush(server);
+        PersistenceQueue.submitRead(() -> storage.findHomes(worldId)).whenCompleteAsync((homes, error) -> {
+            if (error != null) {
+                source.sendError(Text.literal("Home query failed: " + error.getMessage()));
+                return;
+            }
+            source.sendFeedback(() -> Text.literal(homes.size() + " homes in " + worldId + ":").formatted(Formatting.GOLD), false);
+            List<StorageBackend.HomeEntry> shown = homes.subList(0, Math.min(homes.size(), 20));
+            for (StorageBackend.HomeEntry home : shown) {
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(home.playerId());
+                String owner = player != null ? player.getGameProfile().getName() : home.playerId().toString();
+                source.sendFeedback(() -> Text.literal(String.format(" %s: %s (%.0f, %.0f, %.0f)", owner, home.name(),
+                    home.location().x, home.location().y, home.location().z)).formatted(Formatting.GRAY), false);
+            }
+            if (homes.size() > shown.size()) {
+                source.sendFeedback(() -> Text.literal(" ... and " + (homes.size() - shown.size()) + " more").formatted(Formatting.DARK_GRAY), false);
+            }
+        }, server);
+
+        return 1;
+    }
+
+    private static int cacheStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        PlayerDataCache cache = PlayerDataManager.getCache();
+        long lookups = cache.getHits() + cache.getMisses();
+        String hitRate = lookups == 0 ? "n/a" : String.format("%.1f%%", cache.getHits() * 100.0 / lookups);
+
+        source.sendFeedback(() -> Text.literal("Player data cache:").formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Text.literal(" Entries: " + cache.getOnlineCount() + " online, " + cache.getOfflineCount() + " offline, "
+            + cache.getPendingUnloadCount() + " pending unload").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Hits: " + cache.getHits() + ", misses: " + cache.getMisses() + " (" + hitRate + ")").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Evictions: " + cache.getEvictions()).formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Loads: " + PlayerDataLoader.getLoads() + " (" + PlayerDataLoader.getPendingCount() + " pending), avg "
+            + formatMillis(PlayerDataLoader.getAverageLoadNanos()) + ", max " + formatMillis(PlayerDataLoader.getMaxLoadNanos())).formatted(Formatting.GRAY), false);
+
+        for (Map.Entry<UUID, Long> entry : PlayerDataLoader.getSlowestLoads(5)) {
+            ServerPlayerEntity player = source.getServer().getPlayerManager().getPlayer(entry.getKey());
+            String name = player != null ? player.getGameProfile().getName() : entry.getKey().toString();
+            source.sendFeedback(() -> Text.literal("  " + name + ": " + formatMillis(entry.getValue())).formatted(Formatting.DARK_GRAY), false);
+        }
+
+        source.sendFeedback(() -> Text.literal(" Permission checks: " + PermissionUtil.getChecks() + " over " + PermissionUtil.getNodeCount() + " nodes"
+            + (PermissionUtil.getProvider() != null ? " (" + PermissionUtil.getCachedPlayerCount() + " players cached, " + PermissionUtil.getCacheHits()
+            + " cache hits, " + PermissionUtil.getProviderLookups() + " provider lookups)" : "")).formatted(Formatting.GRAY), false);
+
+        return 1;
+    }
+
+    private static int teleportStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        source.sendFeedback(() -> Text.literal("Teleports:").formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Text.literal(" Pending warmups: " + TeleportScheduler.getPendingCount()).formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Chunk preloads: " + ChunkPreloader.getPreloads() + " (" + ChunkPreloader.getPendingCount() + " pending, "
+            + ChunkPreloader.getAlreadyLoaded() + " already loaded, " + ChunkPreloader.getTimeouts() + " timed out)").formatted(Formatting.GRAY), false);
+        source.sendFeedback(() -> Text.literal(" Preload wait: avg " + formatMillis(ChunkPreloader.getAverageWaitNanos())
+            + ", max " + formatMillis(ChunkPreloader.getMaxWaitNanos())).formatted(Formatting.GRAY), false);
+        for (ServerWorld world : source.getServer().getWorlds()) {
+            if (RandomTeleportPool.isAvailable(world)) {
+                source.sendFeedback(() -> Text.literal(" Random teleport pool in " + world.getRegistryKey().getValue() + ": "
+                    + RandomTeleportPool.getReadyCount(world) + " ready").formatted(Formatting.GRAY), false);
+            }
+        }
+        source.sendFeedback(() -> Text.literal(" Random teleport searches: " + RandomTeleportPool.getSearches()
+            + " (" + RandomTeleportPool.getRejected() + " rejected)").formatted(Formatting.GRAY), false);
+
+        return 1;
+    }
+
+    private static int latencyStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        source.sendFeedback(() -> Text.literal("Command latency (runs, p50, p99, max):").formatted(Formatting.GOLD), false);
+        List<Map.Entry<String, LatencyHistogram>> commands = Metrics.getCommands();
+        if (commands.isEmpty()) {
+            source.sendFeedback(() -> Text.literal(" No commands run yet").formatted(Formatting.GRAY), false);
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : commands.subList(0, Math.min(commands.size(), 15))) {
+            source.sendFeedback(() -> Text.literal(" /" + entry.getKey() + ": " + describeLatency(entry.getValue())).formatted(Formatting.GRAY), false);
+        }
+        if (commands.size() > 15) {
+            source.sendFeedback(() -> Text.literal(" ... and " + (commands.size() - 15) + " more").formatted(Formatting.DARK_GRAY), false);
+        }
+
+        source.sendFeedback(() -> Text.literal("Storage latency (calls, p50, p99, max):").formatted(Formatting.GOLD), false);
+        for (Map.Entry<String, LatencyHistogram> entry : Metrics.getStorage()) {
+            source.sendFeedback(() -> Text.literal(" " + entry.getKey() + ": " + describeLatency(entry.getValue())).formatted(Formatting.GRAY), false);
+        }
+
+        return 1;
+    }
+
+    private static String describeLatency(LatencyHistogram histogram) {
+        return histogram.getCount() + ", " + formatMillis(histogram.getPercentileNanos(0.5)) + ", "
+            + formatMillis(histogram.getPercentileNanos(0.99)) + ", " + formatMillis(histogram.getMaxNanos());
+    }
+
+    private static int listJobs(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        source.sendFeedback(() -> Text.literal("Jobs (" + String.format("%.1f", JobExecutor.getLastMspt()) + " mspt, budget "
+            + formatMillis(JobExecutor.getLastBudgetNanos()) + " per tick):").formatted(Formatting.GOLD), false);
+        if (JobExecutor.getJobs().isEmpty()) {
+            source.sendFeedback(() -> Text.literal(" No jobs").formatted(Formatting.GRAY), false);
+            return 1;
+        }
+        for (JobExecutor.JobHandle job : JobExecutor.getJobs()) {
+            long total = job.job.total();
+            String progress = total >= 0 ? job.job.progress() + "/" + total : String.valueOf(job.job.progress());
+            source.sendFeedback(() -> Text.literal(" #" + job.id + " " + job.job.name() + ": " + job.getState().name().toLowerCase()
+                + ", " + progress).formatted(Formatting.GRAY), false);
+            source.sendFeedback(() -> Text.literal("  " + job.getSteps() + " steps over " + job.getActiveTicks() + " ticks, busy "
+                + formatMillis(job.getBusyNanos()) + " (avg " + formatMillis(job.getAverageStepNanos()) + ", max "
+                + formatMillis(job.getMaxStepNanos()) + " per step)").formatted(Formatting.DARK_GRAY), false);
+        }
+
+        return 1;
+    }
+
+    private static int controlJob(CommandContext<ServerCommandSource> context, String action) {
+        ServerCommandSource source = context.getSource();
+        int id = IntegerArgumentType.getInteger(context, "id");
+        boolean changed = switch (action) {
+            case "pause" -> JobExecutor.pause(id);
+            case "resume" -> JobExecutor.resume(id);
+            default -> JobExecutor.cancel(id);
+        };
+
+        if (!changed) {
+            JobExecutor.JobHandle job = JobExecutor.get(id);
+            source.sendError(Text.literal(job == null ? "No job #" + id : "Job #" + id + " is " + job.getState().name().toLowerCase()));
+            return 0;
+        }
+        String done = action.equals("cancel") ? "cancelled" : action + "d";
+        source.sendFeedback(() -> Text.literal("Job #" + id + " " + done), true);
+        return 1;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2fms", nanos / 1_000_000.0);
+    }
+}
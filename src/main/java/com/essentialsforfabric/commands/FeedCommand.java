@@ -14,8 +14,8 @@ public class FeedCommand {
         dispatcher.register(CommandManager.literal("feed")
             .requires(source -> source.hasPermissionLevel(2))
             .executes(context -> feedSelf(context))
-            .then(CommandManager.argument("player", EntityArgumentType.player())
-                .executes(context -> feedOther(context))));
+            .then(CommandManager.argument("players", EntityArgumentType.players())
+                .executes(context -> feedOthers(context))));
     }
 
     private static int feedSelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -25,12 +25,14 @@ public class FeedCommand {
         return 1;
     }
 
-    private static int feedOther(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
-        feed(target);
-        context.getSource().sendFeedback(() -> Text.literal("Fed " + target.getGameProfile().getName()), true);
-        target.sendMessage(Text.literal("You have been fed"));
-        return 1;
+    private static int feedOthers(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        return PlayerBatch.submit(context.getSource(), EntityArgumentType.getPlayers(context, "players"), false,
+            player -> {
+                feed(player);
+                return true;
+            },
+            fed -> "You have been fed",
+            (name, fed, unused) -> name != null ? "Fed " + name : "Fed " + fed + " players");
     }
 
     private static void feed(ServerPlayerEntity player) {
@@ -14,8 +14,8 @@ public class FlyCommand {
         dispatcher.register(CommandManager.literal("fly")
             .requires(source -> source.hasPermissionLevel(2))
             .executes(context -> toggleFlySelf(context))
-            .then(CommandManager.argument("player", EntityArgumentType.player())
-                .executes(context -> toggleFlyOther(context))));
+            .then(CommandManager.argument("players", EntityArgumentType.players())
+                .executes(context -> toggleFlyOthers(context))));
     }
 
     private static int toggleFlySelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -27,21 +27,26 @@ public class FlyCommand {
         return 1;
     }
 
-    private static int toggleFlyOther(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
-        boolean canFly = !target.getAbilities().allowFlying;
-        toggleFly(target, canFly);
-        String status = canFly ? "enabled" : "disabled";
-        context.getSource().sendFeedback(() -> Text.literal("Flight " + status + " for " + target.getGameProfile().getName()), true);
-        target.sendMessage(Text.literal("Flight " + status));
-        return 1;
+    private static int toggleFlyOthers(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        return PlayerBatch.submit(context.getSource(), EntityArgumentType.getPlayers(context, "players"), true,
+            player -> {
+                boolean canFly = !player.getAbilities().allowFlying;
+                setFly(player, canFly);
+                return canFly;
+            },
+            canFly -> "Flight " + (canFly ? "enabled" : "disabled"),
+            (name, enabled, disabled) -> PlayerBatch.describeToggle("Flight", name, enabled, disabled));
     }
 
     private static void toggleFly(ServerPlayerEntity player, boolean canFly) {
+        setFly(player, canFly);
+        player.sendAbilitiesUpdate();
+    }
+
+    private static void setFly(ServerPlayerEntity player, boolean canFly) {
         player.getAbilities().allowFlying = canFly;
         if (!canFly) {
             player.getAbilities().flying = false;
         }
-        player.sendAbilitiesUpdate();
     }
 }
\ No newline at end of file
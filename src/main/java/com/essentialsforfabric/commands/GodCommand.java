@@ -14,8 +14,8 @@ public class GodCommand {
         dispatcher.register(CommandManager.literal("god")
             .requires(source -> source.hasPermissionLevel(2))
             .executes(context -> toggleGodSelf(context))
-            .then(CommandManager.argument("player", EntityArgumentType.player())
-                .executes(context -> toggleGodOther(context))));
+            .then(CommandManager.argument("players", EntityArgumentType.players())
+                .executes(context -> toggleGodOthers(context))));
     }
 
     private static int toggleGodSelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -27,14 +27,15 @@ public class GodCommand {
         return 1;
     }
 
-    private static int toggleGodOther(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
-        boolean invulnerable = !target.getAbilities().invulnerable;
-        toggleGod(target, invulnerable);
-        String status = invulnerable ? "enabled" : "disabled";
-        context.getSource().sendFeedback(() -> Text.literal("God mode " + status + " for " + target.getGameProfile().getName()), true);
-        target.sendMessage(Text.literal("God mode " + status));
-        return 1;
+    private static int toggleGodOthers(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        return PlayerBatch.submit(context.getSource(), EntityArgumentType.getPlayers(context, "players"), true,
+            player -> {
+                boolean invulnerable = !player.getAbilities().invulnerable;
+                player.getAbilities().invulnerable = invulnerable;
+                return invulnerable;
+            },
+            invulnerable -> "God mode " + (invulnerable ? "enabled" : "disabled"),
+            (name, enabled, disabled) -> PlayerBatch.describeToggle("God mode", name, enabled, disabled));
     }
 
     private static void toggleGod(ServerPlayerEntity player, boolean invulnerable) {
@@ -16,8 +16,8 @@ public class HealCommand {
         dispatcher.register(CommandManager.literal("heal")
             .requires(source -> source.hasPermissionLevel(2))
             .executes(context -> healSelf(context))
-            .then(CommandManager.argument("player", EntityArgumentType.player())
-                .executes(context -> healOther(context))));
+            .then(CommandManager.argument("players", EntityArgumentType.players())
+                .executes(context -> healOthers(context))));
     }
 
     private static int healSelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -27,12 +27,14 @@ public class HealCommand {
         return 1;
     }
 
-    private static int healOther(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
-        heal(target);
-        context.getSource().sendFeedback(() -> Text.literal("Healed " + target.getGameProfile().getName()), true);
-        target.sendMessage(Text.literal("You have been healed"));
-        return 1;
+    private static int healOthers(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        return PlayerBatch.submit(context.getSource(), EntityArgumentType.getPlayers(context, "players"), false,
+            player -> {
+                heal(player);
+                return true;
+            },
+            healed -> "You have been healed",
+            (name, healed, unused) -> name != null ? "Healed " + name : "Healed " + healed + " players");
     }
 
     private static void heal(ServerPlayerEntity player) {
@@ -1,8 +1,14 @@
 package com.essentialsforfabric.commands;
 
+import com.essentialsforfabric.config.EssentialsConfig;
+import com.essentialsforfabric.data.PlayerCatalog;
 import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.teleport.ChunkPreloader;
+import com.essentialsforfabric.teleport.TeleportScheduler;
 import com.essentialsforfabric.util.PermissionUtil;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
@@ -19,35 +25,84 @@ import net.minecraft.text.HoverEvent;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
 import net.minecraft.world.World;
+import com.essentialsforfabric.util.TextPages;
 import com.essentialsforfabric.util.WorldUtil;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 
 public class HomeCommands {
+    // Rendered /homes pages per player, dropped with the player's data when it is unloaded
+    private static final Map<PlayerDataManager.PlayerData, CachedPages> homePages = new WeakHashMap<>();
+
+    private record CachedPages(int version, String owner, TextPages pages) {
+    }
+
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("home")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.home", 0))
+            .requires(PermissionUtil.require("essentials.home", 0))
             .executes(context -> home(context, "home"))
-            .then(CommandManager.argument("name", StringArgumentType.string())
+            // Greedy so that player:home works unquoted; each part is then read like a string() argument
+            .then(CommandManager.argument("name", StringArgumentType.greedyString())
+                .suggests(NameSuggestions.HOMES)
                 .executes(context -> home(context, StringArgumentType.getString(context, "name")))));
 
         dispatcher.register(CommandManager.literal("sethome")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.sethome", 0))
+            .requires(PermissionUtil.require("essentials.sethome", 0))
             .executes(context -> setHome(context, "home"))
             .then(CommandManager.argument("name", StringArgumentType.string())
                 .executes(context -> setHome(context, StringArgumentType.getString(context, "name")))));
 
         dispatcher.register(CommandManager.literal("delhome")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.sethome", 0))
+            .requires(PermissionUtil.require("essentials.sethome", 0))
             .then(CommandManager.argument("name", StringArgumentType.string())
+                .suggests(NameSuggestions.HOMES)
                 .executes(context -> deleteHome(context, StringArgumentType.getString(context, "name")))));
 
         dispatcher.register(CommandManager.literal("homes")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.home", 0))
-            .executes(HomeCommands::listHomes));
+            .requires(PermissionUtil.require("essentials.home", 0))
+            .executes(context -> listHomes(context, 1))
+            .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                .executes(context -> listHomes(context, IntegerArgumentType.getInteger(context, "page"))))
+            // Behind a literal so that player names made of digits aren't read as page numbers
+            .then(CommandManager.literal("of")
+                .requires(PermissionUtil.require("essentials.home.others", 2))
+                .then(CommandManager.argument("player", StringArgumentType.word())
+                    .suggests(NameSuggestions.PLAYERS)
+                    .executes(context -> listOtherHomes(context, StringArgumentType.getString(context, "player"), 1))
+                    .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                        .executes(context -> listOtherHomes(context, StringArgumentType.getString(context, "player"),
+                            IntegerArgumentType.getInteger(context, "page")))))));
     }
 
-    private static int home(CommandContext<ServerCommandSource> context, String homeName) throws CommandSyntaxException {
+    private static int home(CommandContext<ServerCommandSource> context, String input) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        StringReader reader = new StringReader(input);
+        String ownerName = null;
+        String homeName = reader.readString();
+        if (reader.canRead() && reader.peek() == ':') {
+            reader.skip();
+            ownerName = homeName;
+            homeName = reader.readString();
+        }
+        reader.skipWhitespace();
+        if (reader.canRead()) {
+            context.getSource().sendError(Text.literal("Unexpected '" + reader.getRemaining() + "' after the home name"));
+            return 0;
+        }
+        if (ownerName != null) {
+            if (!PermissionUtil.hasPermission(context.getSource(), "essentials.home.others")) {
+                context.getSource().sendError(Text.literal("You don't have permission to use other players' homes"));
+                return 0;
+            }
+            return otherHome(context, player, ownerName, homeName);
+        }
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
         PlayerDataManager.LocationData home = PlayerDataManager.getHome(player.getUuid(), homeName);
 
         if (home == null) {
@@ -55,8 +110,34 @@ public class HomeCommands {
             return 0;
         }
 
-        PlayerDataManager.setLastLocation(player);
+        return teleportHome(context, player, home, homeName);
+    }
+
+    private static int otherHome(CommandContext<ServerCommandSource> context, ServerPlayerEntity player, String ownerName, String homeName) {
+        PlayerCatalog.Entry owner = PlayerDataManager.findPlayer(ownerName);
+        if (owner == null) {
+            context.getSource().sendError(Text.literal("No player named '" + ownerName + "' has joined since the player catalog was created"));
+            return 0;
+        }
+
+        String label = owner.name() + ":" + homeName;
+        // Completes on the server thread; 1 only means the lookup has started
+        PlayerDataManager.loadPlayerDataAsync(owner.playerId()).whenComplete((data, error) -> {
+            if (error != null || data == null) {
+                reportLoadFailure(context.getSource(), owner, error);
+                return;
+            }
+            PlayerDataManager.LocationData home = data.homes.get(homeName.toLowerCase());
+            if (home == null) {
+                context.getSource().sendError(Text.literal("Home '" + label + "' not found"));
+            } else if (!player.isRemoved()) {
+                teleportHome(context, player, home, label);
+            }
+        });
+        return 1;
+    }
 
+    private static int teleportHome(CommandContext<ServerCommandSource> context, ServerPlayerEntity player, PlayerDataManager.LocationData home, String homeName) {
         RegistryKey<World> worldKey = RegistryKey.of(RegistryKeys.WORLD, new Identifier(home.world));
         ServerWorld world = context.getSource().getServer().getWorld(worldKey);
 
@@ -65,16 +146,21 @@ public class HomeCommands {
             return 0;
         }
 
-        player.teleport(world, home.x, home.y, home.z, home.yaw, home.pitch);
-        context.getSource().sendFeedback(() -> Text.literal("Teleported to home: " + homeName), false);
+        boolean scheduled = TeleportScheduler.schedule(player, "home", () -> ChunkPreloader.preload(player, world, home.x, home.z, () -> {
+            PlayerDataManager.setLastLocation(player);
+            player.teleport(world, home.x, home.y, home.z, home.yaw, home.pitch);
+            context.getSource().sendFeedback(() -> Text.literal("Teleported to home: " + homeName), false);
+        }));
 
-        return 1;
+        return scheduled ? 1 : 0;
     }
 
     private static int setHome(CommandContext<ServerCommandSource> context, String homeName) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
-
-        PlayerDataManager.setHome(player, homeName);
+        if (!PlayerDataManager.setHome(player, homeName)) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
         context.getSource().sendFeedback(() -> Text.literal("Home '" + homeName + "' set"), false);
 
         return 1;
@@ -82,9 +168,12 @@ public class HomeCommands {
 
     private static int deleteHome(CommandContext<ServerCommandSource> context, String homeName) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
-        PlayerDataManager.PlayerData data = PlayerDataManager.getPlayerData(player.getUuid());
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
 
-        if (data.homes.remove(homeName.toLowerCase()) != null) {
+        if (PlayerDataManager.deleteHome(player.getUuid(), homeName)) {
             context.getSource().sendFeedback(() -> Text.literal("Home '" + homeName + "' deleted"), false);
             return 1;
         } else {
@@ -93,8 +182,12 @@ public class HomeCommands {
         }
     }
 
-    private static int listHomes(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    private static int listHomes(CommandContext<ServerCommandSource> context, int page) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
         PlayerDataManager.PlayerData data = PlayerDataManager.getPlayerData(player.getUuid());
 
         if (data.homes == null || data.homes.isEmpty()) {
@@ -102,39 +195,106 @@ public class HomeCommands {
             return 0;
         }
 
-        int count = data.homes.size();
-        context.getSource().sendFeedback(() -> Text.literal("Your homes (" + count + "):"), false);
+        TextPages pages = getHomePages(data, null);
+        Text text = pages.getPage(page);
+        if (text == null) {
+            context.getSource().sendError(Text.literal("Page " + page + " doesn't exist, there are " + pages.getPageCount() + " pages"));
+            return 0;
+        }
+
+        context.getSource().sendFeedback(() -> text, false);
+        return pages.getLineCount();
+    }
+
+    /**
+     * Lists another player's homes, loading their data off the server thread if they are offline.
+     * A catalog that says they have none answers without loading anything.
+     */
+    private static int listOtherHomes(CommandContext<ServerCommandSource> context, String ownerName, int page) {
+        ServerCommandSource source = context.getSource();
+        PlayerCatalog.Entry owner = PlayerDataManager.findPlayer(ownerName);
+        if (owner == null) {
+            source.sendError(Text.literal("No player named '" + ownerName + "' has joined since the player catalog was created"));
+            return 0;
+        }
+        if (owner.homeCount() == 0) {
+            source.sendFeedback(() -> Text.literal(owner.name() + " has no homes set"), false);
+            return 0;
+        }
+
+        PlayerDataManager.loadPlayerDataAsync(owner.playerId()).whenComplete((data, error) -> {
+            if (error != null || data == null) {
+                reportLoadFailure(source, owner, error);
+                return;
+            }
+            if (data.homes.isEmpty()) {
+                source.sendFeedback(() -> Text.literal(owner.name() + " has no homes set"), false);
+                return;
+            }
+            TextPages pages = getHomePages(data, owner.name());
+            Text text = pages.getPage(page);
+            if (text == null) {
+                source.sendError(Text.literal("Page " + page + " doesn't exist, there are " + pages.getPageCount() + " pages"));
+            } else {
+                source.sendFeedback(() -> text, false);
+            }
+        });
+        return owner.homeCount();
+    }
+
+    private static void reportLoadFailure(ServerCommandSource source, PlayerCatalog.Entry owner, Throwable error) {
+        if (error != null) {
+            error.printStackTrace();
+        }
+        // No data without an error means it was evicted again before this ran
+        source.sendError(Text.literal("Could not load " + owner.name() + "'s homes, please try again in a moment"));
+    }
+
+    /**
+     * @param owner the name to show when listing someone else's homes, or {@code null} for your own
+     */
+    private static TextPages getHomePages(PlayerDataManager.PlayerData data, String owner) {
+        int pageSize = Math.max(1, EssentialsConfig.get().listPageSize);
+        CachedPages cached = homePages.get(data);
+        if (cached != null && cached.version() == data.homesVersion && Objects.equals(cached.owner(), owner)
+            && cached.pages().getPageSize() == pageSize) {
+            return cached.pages();
+        }
 
+        String prefix = owner == null ? "" : owner + ":";
+        List<Text> lines = new ArrayList<>();
         data.homes.entrySet().stream()
             .sorted(Map.Entry.comparingByKey(String.CASE_INSENSITIVE_ORDER))
-            .forEachOrdered(entry -> {
-            String name = entry.getKey();
-            PlayerDataManager.LocationData loc = entry.getValue();
-            String worldLabel = WorldUtil.readableWorld(loc.world);
-            int ix = (int) Math.floor(loc.x);
-            int iy = (int) Math.floor(loc.y);
-            int iz = (int) Math.floor(loc.z);
-
-            MutableText line = Text.literal(" - ")
-                .append(
-                        Text.literal("[Teleport]")
-                                .styled(style -> style
-                                        .withColor(Formatting.GREEN)
-                                        .withBold(true)
-                                        .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/home " + name))
-                                        .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Click to teleport to '" + name + "'"))))
-                )
-                    .append(Text.literal(" "))
-                .append(Text.literal(name).formatted(Formatting.AQUA))
-                .append(Text.literal("  "))
-                .append(Text.literal("[" + worldLabel + "] ").formatted(Formatting.DARK_GRAY))
-                .append(Text.literal(ix + ", " + iy + ", " + iz).formatted(Formatting.GRAY))
-                .append(Text.literal("  "));
-
-            context.getSource().sendFeedback(() -> line, false);
-        });
+            .forEachOrdered(entry -> lines.add(homeLine(entry.getKey(), prefix + entry.getKey(), entry.getValue())));
+
+        TextPages pages = owner == null
+            ? new TextPages("Your homes", lines, pageSize, "/homes")
+            : new TextPages(owner + "'s homes", lines, pageSize, "/homes of " + owner);
+        homePages.put(data, new CachedPages(data.homesVersion, owner, pages));
+        return pages;
+    }
+
+    private static MutableText homeLine(String name, String target, PlayerDataManager.LocationData loc) {
+        String worldLabel = WorldUtil.readableWorld(loc.world);
+        int ix = (int) Math.floor(loc.x);
+        int iy = (int) Math.floor(loc.y);
+        int iz = (int) Math.floor(loc.z);
 
-        return count;
+        return Text.literal(" - ")
+            .append(
+                    Text.literal("[Teleport]")
+                            .styled(style -> style
+                                    .withColor(Formatting.GREEN)
+                                    .withBold(true)
+                                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/home " + target))
+                                    .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Click to teleport to '" + target + "'"))))
+            )
+                .append(Text.literal(" "))
+            .append(Text.literal(name).formatted(Formatting.AQUA))
+            .append(Text.literal("  "))
+            .append(Text.literal("[" + worldLabel + "] ").formatted(Formatting.DARK_GRAY))
+            .append(Text.literal(ix + ", " + iy + ", " + iz).formatted(Formatting.GRAY))
+            .append(Text.literal("  "));
     }
 
 }
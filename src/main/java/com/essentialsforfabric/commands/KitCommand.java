@@ -0,0 +1,144 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.data.KitCooldowns;
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.kits.Kit;
+import com.essentialsforfabric.kits.KitManager;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+public class KitCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("kit")
+            .requires(PermissionUtil.require("essentials.kit", 0))
+            .executes(KitCommand::listKits)
+            .then(CommandManager.argument("name", StringArgumentType.word())
+                .suggests(NameSuggestions.KITS)
+                .executes(context -> claimKit(context, StringArgumentType.getString(context, "name")))
+                .then(CommandManager.argument("player", EntityArgumentType.player())
+                    .requires(PermissionUtil.require("essentials.kit.others", 2))
+                    .executes(context -> giveKit(context, StringArgumentType.getString(context, "name"), EntityArgumentType.getPlayer(context, "player"))))));
+
+        dispatcher.register(CommandManager.literal("kits")
+            .requires(PermissionUtil.require("essentials.kit", 0))
+            .executes(KitCommand::listKits));
+    }
+
+    private static int claimKit(CommandContext<ServerCommandSource> context, String kitName) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        ServerPlayerEntity player = source.getPlayerOrThrow();
+        Kit kit = KitManager.get(kitName);
+        if (kit == null || !PermissionUtil.hasPermission(source, kit.getPermission())) {
+            source.sendError(Text.literal("Kit '" + kitName + "' not found"));
+            return 0;
+        }
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            source.sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long remaining = KitManager.getRemainingMillis(player.getUuid(), kit, now);
+        if (remaining == KitCooldowns.NEVER) {
+            source.sendError(Text.literal("You have already claimed kit '" + kit.getName() + "'"));
+            return 0;
+        }
+        if (remaining > 0) {
+            source.sendError(Text.literal("You can claim kit '" + kit.getName() + "' again in " + formatDuration(remaining)));
+            return 0;
+        }
+
+        if (!KitManager.claim(player, kit, now)) {
+            source.sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
+        source.sendFeedback(() -> Text.literal("Received kit '" + kit.getName() + "'"), false);
+        return 1;
+    }
+
+    private static int giveKit(CommandContext<ServerCommandSource> context, String kitName, ServerPlayerEntity target) {
+        Kit kit = KitManager.get(kitName);
+        if (kit == null) {
+            context.getSource().sendError(Text.literal("Kit '" + kitName + "' not found"));
+            return 0;
+        }
+
+        // Handed out by someone else, so the target's own cooldown is neither checked nor started
+        kit.giveTo(target);
+        context.getSource().sendFeedback(() -> Text.literal("Gave kit '" + kit.getName() + "' to " + target.getGameProfile().getName()), true);
+        target.sendMessage(Text.literal("You received kit '" + kit.getName() + "'"));
+        return 1;
+    }
+
+    private static int listKits(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        ServerPlayerEntity player = source.getPlayer();
+        long now = System.currentTimeMillis();
+
+        MutableText text = Text.literal("Available kits:");
+        int count = 0;
+        for (Kit kit : KitManager.getAll()) {
+            if (!PermissionUtil.hasPermission(source, kit.getPermission())) {
+                continue;
+            }
+            long remaining = player != null && !PlayerDataManager.isLoading(player.getUuid())
+                ? KitManager.getRemainingMillis(player.getUuid(), kit, now) : 0;
+            text.append(Text.literal("\n")).append(kitLine(kit, remaining));
+            count++;
+        }
+
+        if (count == 0) {
+            source.sendFeedback(() -> Text.literal("No kits available"), false);
+            return 0;
+        }
+        source.sendFeedback(() -> text, false);
+        return count;
+    }
+
+    private static MutableText kitLine(Kit kit, long remaining) {
+        MutableText line = Text.literal(" - ");
+        if (remaining == 0) {
+            line.append(Text.literal("[Claim]")
+                .styled(style -> style
+                    .withColor(Formatting.GREEN)
+                    .withBold(true)
+                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/kit " + kit.getName()))
+                    .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Click to claim '" + kit.getName() + "'")))));
+        } else {
+            line.append(Text.literal("[Claim]").formatted(Formatting.DARK_GRAY));
+        }
+
+        line.append(Text.literal("  "))
+            .append(Text.literal(kit.getName()).formatted(Formatting.AQUA))
+            .append(Text.literal("  " + kit.getItemCount() + " items").formatted(Formatting.GRAY));
+        if (remaining == KitCooldowns.NEVER) {
+            line.append(Text.literal("  already claimed").formatted(Formatting.DARK_GRAY));
+        } else if (remaining > 0) {
+            line.append(Text.literal("  ready in " + formatDuration(remaining)).formatted(Formatting.DARK_GRAY));
+        }
+        return line;
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds >= 3600) {
+            return seconds / 3600 + "h " + seconds % 3600 / 60 + "m";
+        }
+        if (seconds >= 60) {
+            return seconds / 60 + "m " + seconds % 60 + "s";
+        }
+        return seconds + "s";
+    }
+}
@@ -0,0 +1,50 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.data.NameTrie;
+import com.essentialsforfabric.data.PlayerCatalog;
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.kits.KitManager;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tab completion for home, warp, kit and player names. The trie to search is picked on the server thread,
+ * the prefix walk itself runs in the background and returns at most {@link #MAX_SUGGESTIONS} names.
+ */
+public class NameSuggestions {
+    private static final int MAX_SUGGESTIONS = 50;
+
+    public static final SuggestionProvider<ServerCommandSource> HOMES = (context, builder) -> {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)
+            || PlayerDataManager.isLoading(player.getUuid())) {
+            return Suggestions.empty();
+        }
+        return suggest(PlayerDataManager.getHomeNames(player.getUuid()), builder);
+    };
+
+    public static final SuggestionProvider<ServerCommandSource> WARPS = (context, builder) ->
+        suggest(PlayerDataManager.getWarpNames(), builder);
+
+    public static final SuggestionProvider<ServerCommandSource> KITS = (context, builder) ->
+        suggest(KitManager.getNames(), builder);
+
+    public static final SuggestionProvider<ServerCommandSource> PLAYERS = (context, builder) -> {
+        PlayerCatalog catalog = PlayerDataManager.getCatalog();
+        return catalog != null ? suggest(catalog.getNames(), builder) : Suggestions.empty();
+    };
+
+    private static CompletableFuture<Suggestions> suggest(NameTrie names, SuggestionsBuilder builder) {
+        String prefix = builder.getRemaining().toLowerCase();
+        return CompletableFuture.supplyAsync(() -> {
+            for (String name : names.complete(prefix, MAX_SUGGESTIONS)) {
+                builder.suggest(name);
+            }
+            return builder.build();
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Applies an admin command such as /heal or /fly to every player matched by a selector, at most
+ * {@code batchPlayersPerTick} players per tick.
+ */
+public class PlayerBatch {
+    private static final Deque<Batch> batches = new ArrayDeque<>();
+    private static final Map<ServerPlayerEntity, List<String>> messages = new LinkedHashMap<>();
+    private static final Set<ServerPlayerEntity> abilityUpdates = new LinkedHashSet<>();
+    private static int budget = -1;
+
+    public interface Update {
+        /**
+         * Applies the change to one player.
+         *
+         * @return the state the player ended up in, for commands that toggle something
+         */
+        boolean apply(ServerPlayerEntity player);
+    }
+
+    public interface Message {
+        String describe(boolean state);
+    }
+
+    public interface Summary {
+        /**
+         * @param name the player's name when exactly one player was affected, otherwise null
+         */
+        String describe(String name, int enabled, int disabled);
+    }
+
+    private static class Batch {
+        final ServerCommandSource source;
+        final List<UUID> targets;
+        final boolean abilities;
+        final Update update;
+        final Message message;
+        final Summary summary;
+        int next;
+        int enabled;
+        int disabled;
+        String lastName;
+
+        Batch(ServerCommandSource source, List<UUID> targets, boolean abilities, Update update, Message message, Summary summary) {
+            this.source = source;
+            this.targets = targets;
+            this.abilities = abilities;
+            this.update = update;
+            this.message = message;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * Queues {@code update} for each of {@code targets} and starts on it straight away if this
+     * tick's budget allows, so a selector matching one player still completes immediately.
+     *
+     * @param abilities whether the update changes player abilities and needs them resent
+     * @return the number of players queued
+     */
+    public static int submit(ServerCommandSource source, Collection<ServerPlayerEntity> targets, boolean abilities, Update update, Message message, Summary summary) {
+        List<UUID> ids = new ArrayList<>(targets.size());
+        for (ServerPlayerEntity target : targets) {
+            ids.add(target.getUuid());
+        }
+        batches.addLast(new Batch(source, ids, abilities, update, message, summary));
+        process(source.getServer());
+        return ids.size();
+    }
+
+    /**
+     * Summary for commands that switch something on or off, e.g. "Flight enabled for Steve" or
+     * "Flight enabled for 12 and disabled for 3 players".
+     */
+    public static String describeToggle(String feature, String name, int enabled, int disabled) {
+        if (name != null) {
+            return feature + (enabled > 0 ? " enabled" : " disabled") + " for " + name;
+        }
+        if (disabled == 0) {
+            return feature + " enabled for " + enabled + " players";
+        }
+        if (enabled == 0) {
+            return feature + " disabled for " + disabled + " players";
+        }
+        return feature + " enabled for " + enabled + " and disabled for " + disabled + " players";
+    }
+
+    public static int getQueuedCount() {
+        int queued = 0;
+        for (Batch batch : batches) {
+            queued += batch.targets.size() - batch.next;
+        }
+        return queued;
+    }
+
+    public static void tick(MinecraftServer server) {
+        process(server);
+        flush();
+        // Refilled at the end of the tick, so commands run during the next one share it
+        budget = Math.max(1, EssentialsConfig.get().batchPlayersPerTick);
+    }
+
+    public static void clear() {
+        batches.clear();
+        messages.clear();
+        abilityUpdates.clear();
+        budget = -1;
+    }
+
+    private static void process(MinecraftServer server) {
+        if (budget < 0) {
+            budget = Math.max(1, EssentialsConfig.get().batchPlayersPerTick);
+        }
+
+        Batch batch;
+        while (budget > 0 && (batch = batches.peekFirst()) != null) {
+            while (budget > 0 && batch.next < batch.targets.size()) {
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(batch.targets.get(batch.next++));
+                if (player == null) {
+                    // Left before their turn came
+                    continue;
+                }
+                budget--;
+                apply(batch, player);
+            }
+            if (batch.next >= batch.targets.size()) {
+                batches.pollFirst();
+                finish(batch);
+            }
+        }
+    }
+
+    private static void apply(Batch batch, ServerPlayerEntity player) {
+        boolean state = batch.update.apply(player);
+        if (state) {
+            batch.enabled++;
+        } else {
+            batch.disabled++;
+        }
+        batch.lastName = player.getGameProfile().getName();
+
+        if (batch.abilities) {
+            abilityUpdates.add(player);
+        }
+        messages.computeIfAbsent(player, key -> new ArrayList<>(2)).add(batch.message.describe(state));
+    }
+
+    private static void finish(Batch batch) {
+        int affected = batch.enabled + batch.disabled;
+        if (affected == 0) {
+            batch.source.sendError(Text.literal("None of the selected players are online anymore"));
+            return;
+        }
+        String summary = batch.summary.describe(affected == 1 ? batch.lastName : null, batch.enabled, batch.disabled);
+        batch.source.sendFeedback(() -> Text.literal(summary), true);
+    }
+
+    private static void flush() {
+        for (ServerPlayerEntity player : abilityUpdates) {
+            player.sendAbilitiesUpdate();
+        }
+        abilityUpdates.clear();
+
+        for (Map.Entry<ServerPlayerEntity, List<String>> entry : messages.entrySet()) {
+            entry.getKey().sendMessage(Text.literal(String.join(", ", entry.getValue())));
+        }
+        messages.clear();
+    }
+}
@@ -0,0 +1,52 @@
+package com.essentialsforfabric.commands;
+
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.teleport.RandomTeleportPool;
+import com.essentialsforfabric.teleport.TeleportScheduler;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+
+public class RandomTeleportCommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("rtp")
+            .requires(PermissionUtil.require("essentials.rtp", 0))
+            .executes(RandomTeleportCommand::randomTeleport));
+    }
+
+    private static int randomTeleport(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        ServerWorld world = player.getServerWorld();
+
+        if (!RandomTeleportPool.isAvailable(world)) {
+            context.getSource().sendError(Text.literal("Random teleport is not available in this dimension"));
+            return 0;
+        }
+        if (RandomTeleportPool.getReadyCount(world) == 0) {
+            context.getSource().sendError(Text.literal("No safe location is ready yet, please try again in a moment"));
+            return 0;
+        }
+
+        boolean scheduled = TeleportScheduler.schedule(player, "rtp", () -> {
+            // Taken only now so a cancelled warmup doesn't use up a location
+            BlockPos pos = RandomTeleportPool.take(player.getServerWorld());
+            if (pos == null) {
+                context.getSource().sendError(Text.literal("No safe location is ready yet, please try again in a moment"));
+                return;
+            }
+
+            PlayerDataManager.setLastLocation(player);
+            player.teleport(player.getServerWorld(), pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5, player.getYaw(), player.getPitch());
+            context.getSource().sendFeedback(() -> Text.literal("Teleported to " + pos.getX() + ", " + pos.getY() + ", " + pos.getZ()), false);
+        });
+
+        return scheduled ? 1 : 0;
+    }
+}
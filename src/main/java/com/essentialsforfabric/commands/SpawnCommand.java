@@ -1,5 +1,7 @@
 package com.essentialsforfabric.commands;
 
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.teleport.TeleportScheduler;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
@@ -22,9 +24,12 @@ public class SpawnCommand {
 
     private static int teleportToSpawn(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
-        teleportPlayerToSpawn(player);
-        context.getSource().sendFeedback(() -> Text.literal("Teleported to spawn"), false);
-        return 1;
+        boolean scheduled = TeleportScheduler.schedule(player, "spawn", () -> {
+            PlayerDataManager.setLastLocation(player);
+            teleportPlayerToSpawn(player);
+            context.getSource().sendFeedback(() -> Text.literal("Teleported to spawn"), false);
+        });
+        return scheduled ? 1 : 0;
     }
 
     private static int teleportOtherToSpawn(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
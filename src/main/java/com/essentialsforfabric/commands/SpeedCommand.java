@@ -16,8 +16,8 @@ public class SpeedCommand {
             .requires(source -> source.hasPermissionLevel(2))
             .then(CommandManager.argument("amount", FloatArgumentType.floatArg(0.0f, 10.0f))
                 .executes(context -> setSpeedSelf(context))
-                .then(CommandManager.argument("player", EntityArgumentType.player())
-                    .executes(context -> setSpeedOther(context)))));
+                .then(CommandManager.argument("players", EntityArgumentType.players())
+                    .executes(context -> setSpeedOthers(context)))));
     }
 
     private static int setSpeedSelf(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -28,20 +28,26 @@ public class SpeedCommand {
         return 1;
     }
 
-    private static int setSpeedOther(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-        ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
+    private static int setSpeedOthers(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
         float speed = FloatArgumentType.getFloat(context, "amount");
-        setSpeed(target, speed);
-        context.getSource().sendFeedback(() -> Text.literal("Speed set to " + speed + " for " + target.getGameProfile().getName()), true);
-        target.sendMessage(Text.literal("Speed set to " + speed));
-        return 1;
+        return PlayerBatch.submit(context.getSource(), EntityArgumentType.getPlayers(context, "players"), true,
+            player -> {
+                applySpeed(player, speed);
+                return true;
+            },
+            unused -> "Speed set to " + speed,
+            (name, count, unused) -> "Speed set to " + speed + " for " + (name != null ? name : count + " players"));
     }
 
     private static void setSpeed(ServerPlayerEntity player, float speed) {
+        applySpeed(player, speed);
+        player.sendAbilitiesUpdate();
+    }
+
+    private static void applySpeed(ServerPlayerEntity player, float speed) {
         float walkSpeed = speed * 0.1f;
         float flySpeed = speed * 0.05f;
         player.getAbilities().setWalkSpeed(walkSpeed);
         player.getAbilities().setFlySpeed(flySpeed);
-        player.sendAbilitiesUpdate();
     }
 }
\ No newline at end of file
@@ -3,6 +3,9 @@ package com.essentialsforfabric.commands;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.teleport.TeleportRequestManager;
+import com.essentialsforfabric.teleport.TeleportScheduler;
 import com.essentialsforfabric.util.PermissionUtil;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.server.command.CommandManager;
@@ -14,6 +17,8 @@ import net.minecraft.text.ClickEvent;
 import net.minecraft.text.HoverEvent;
 import net.minecraft.util.Formatting;
 
+import java.util.UUID;
+
 public class TeleportCommands {
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("tp")
@@ -28,17 +33,32 @@ public class TeleportCommands {
 
         // Teleport request commands
         dispatcher.register(CommandManager.literal("tpa")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.tpa", 0))
+            .requires(PermissionUtil.require("essentials.tpa", 0))
+            .then(CommandManager.argument("player", EntityArgumentType.player())
+                .executes(context -> sendTeleportRequest(context, TeleportRequestManager.Type.TPA))));
+
+        dispatcher.register(CommandManager.literal("tpahere")
+            .requires(PermissionUtil.require("essentials.tpahere", 0))
+            .then(CommandManager.argument("player", EntityArgumentType.player())
+                .executes(context -> sendTeleportRequest(context, TeleportRequestManager.Type.TPAHERE))));
+
+        dispatcher.register(CommandManager.literal("tpacancel")
+            .requires(PermissionUtil.require("essentials.tpa", 0))
+            .executes(context -> cancelTeleportRequest(context, false))
             .then(CommandManager.argument("player", EntityArgumentType.player())
-                .executes(context -> sendTeleportRequest(context))));
+                .executes(context -> cancelTeleportRequest(context, true))));
 
         dispatcher.register(CommandManager.literal("tpaccept")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.tpaccept", 0))
-            .executes(context -> acceptTeleportRequest(context)));
+            .requires(PermissionUtil.require("essentials.tpaccept", 0))
+            .executes(context -> acceptTeleportRequest(context, false))
+            .then(CommandManager.argument("player", EntityArgumentType.player())
+                .executes(context -> acceptTeleportRequest(context, true))));
 
         dispatcher.register(CommandManager.literal("tpdeny")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.tpdeny", 0))
-            .executes(context -> denyTeleportRequest(context)));
+            .requires(PermissionUtil.require("essentials.tpdeny", 0))
+            .executes(context -> denyTeleportRequest(context, false))
+            .then(CommandManager.argument("player", EntityArgumentType.player())
+                .executes(context -> denyTeleportRequest(context, true))));
     }
 
     private static int teleportToPlayer(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
@@ -73,28 +93,7 @@ public class TeleportCommands {
     }
 
     // --- TPA system ---
-    private static final java.util.Map<java.util.UUID, TeleportRequest> PENDING_REQUESTS = new java.util.HashMap<>();
-    private static final long REQUEST_TTL_MILLIS = 60_000L; // 60 seconds
-
-    private static class TeleportRequest {
-        final java.util.UUID requester;
-        final java.util.UUID target;
-        final long createdAt;
-        final String requesterName;
-
-        TeleportRequest(java.util.UUID requester, java.util.UUID target, String requesterName) {
-            this.requester = requester;
-            this.target = target;
-            this.requesterName = requesterName;
-            this.createdAt = System.currentTimeMillis();
-        }
-
-        boolean isExpired() {
-            return System.currentTimeMillis() - createdAt > REQUEST_TTL_MILLIS;
-        }
-    }
-
-    private static int sendTeleportRequest(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    private static int sendTeleportRequest(CommandContext<ServerCommandSource> context, TeleportRequestManager.Type type) throws CommandSyntaxException {
         ServerPlayerEntity requester = context.getSource().getPlayerOrThrow();
         ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
 
@@ -103,84 +102,93 @@ public class TeleportCommands {
             return 0;
         }
 
-        TeleportRequest req = new TeleportRequest(requester.getUuid(), target.getUuid(), requester.getGameProfile().getName());
-        synchronized (PENDING_REQUESTS) {
-            PENDING_REQUESTS.put(target.getUuid(), req);
+        TeleportRequestManager.SendResult result = TeleportRequestManager.send(requester, target, type);
+        if (result == TeleportRequestManager.SendResult.TARGET_FULL) {
+            context.getSource().sendError(Text.literal(target.getGameProfile().getName() + " has too many pending teleport requests"));
+            return 0;
         }
 
-        requester.sendMessage(Text.literal("Teleport request sent to " + target.getGameProfile().getName()).formatted(Formatting.GRAY));
+        String requesterName = requester.getGameProfile().getName();
+        requester.sendMessage(Text.literal((result == TeleportRequestManager.SendResult.REPLACED ? "Teleport request re-sent to " : "Teleport request sent to ")
+            + target.getGameProfile().getName()).formatted(Formatting.GRAY));
 
         MutableText actions = Text.literal("")
             .append(Text.literal("[Accept]")
                 .styled(style -> style
                     .withColor(Formatting.GREEN)
                     .withBold(true)
-                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpaccept"))
+                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpaccept " + requesterName))
                     .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Accept teleport request")))))
             .append(Text.literal(" "))
             .append(Text.literal("[Deny]")
                 .styled(style -> style
                     .withColor(Formatting.RED)
                     .withBold(true)
-                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpdeny"))
+                    .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/tpdeny " + requesterName))
                     .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Deny teleport request")))));
 
-        target.sendMessage(Text.literal(req.requesterName + " has requested to teleport to you.").formatted(Formatting.AQUA));
+        String message = type == TeleportRequestManager.Type.TPAHERE
+            ? requesterName + " has requested that you teleport to them."
+            : requesterName + " has requested to teleport to you.";
+        target.sendMessage(Text.literal(message).formatted(Formatting.AQUA));
         target.sendMessage(actions);
 
         return 1;
     }
 
-    private static int acceptTeleportRequest(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    private static int acceptTeleportRequest(CommandContext<ServerCommandSource> context, boolean named) throws CommandSyntaxException {
         ServerPlayerEntity target = context.getSource().getPlayerOrThrow();
-        TeleportRequest req;
-        synchronized (PENDING_REQUESTS) {
-            req = PENDING_REQUESTS.get(target.getUuid());
-        }
+        UUID requesterId = named ? EntityArgumentType.getPlayer(context, "player").getUuid() : null;
+        TeleportRequestManager.TeleportRequest req = TeleportRequestManager.peek(target.getUuid(), requesterId);
 
         if (req == null) {
-            context.getSource().sendError(Text.literal("You have no pending teleport requests"));
-            return 0;
-        }
-
-        if (req.isExpired()) {
-            synchronized (PENDING_REQUESTS) {
-                PENDING_REQUESTS.remove(target.getUuid());
-            }
-            context.getSource().sendError(Text.literal("The teleport request has expired"));
+            context.getSource().sendError(Text.literal(named ? "You have no pending teleport request from that player" : "You have no pending teleport requests"));
             return 0;
         }
 
         ServerPlayerEntity requester = target.getServer().getPlayerManager().getPlayer(req.requester);
         if (requester == null) {
-            synchronized (PENDING_REQUESTS) {
-                PENDING_REQUESTS.remove(target.getUuid());
-            }
+            TeleportRequestManager.take(target.getUuid(), req.requester);
             context.getSource().sendError(Text.literal("The requesting player is no longer online"));
             return 0;
         }
 
-        requester.teleport(target.getServerWorld(), target.getX(), target.getY(), target.getZ(), requester.getYaw(), requester.getPitch());
+        // The request stays pending while whoever would travel is on cooldown, so it can be accepted later
+        ServerPlayerEntity traveller = req.type == TeleportRequestManager.Type.TPAHERE ? target : requester;
+        long cooldown = TeleportScheduler.getCooldownRemaining(traveller.getUuid(), "tpa");
+        if (cooldown > 0) {
+            context.getSource().sendError(Text.literal(traveller == target
+                ? "You must wait " + TeleportScheduler.formatSeconds(cooldown) + " before using /tpa again"
+                : req.requesterName + " must wait " + TeleportScheduler.formatSeconds(cooldown) + " before teleporting again"));
+            return 0;
+        }
+        if (TeleportRequestManager.take(target.getUuid(), req.requester) != req) {
+            context.getSource().sendError(Text.literal("That teleport request is no longer pending"));
+            return 0;
+        }
 
         requester.sendMessage(Text.literal("Your teleport request to " + target.getGameProfile().getName() + " was accepted").formatted(Formatting.GREEN));
         target.sendMessage(Text.literal("Accepted teleport request from " + req.requesterName).formatted(Formatting.GREEN));
 
-        synchronized (PENDING_REQUESTS) {
-            PENDING_REQUESTS.remove(target.getUuid());
-        }
+        // The destination is read when the warmup ends, so the player arrives where the other one is by then
+        ServerPlayerEntity destination = traveller == target ? requester : target;
+        boolean scheduled = TeleportScheduler.schedule(traveller, "tpa", () -> {
+            if (!destination.isRemoved()) {
+                PlayerDataManager.setLastLocation(traveller);
+                traveller.teleport(destination.getServerWorld(), destination.getX(), destination.getY(), destination.getZ(), traveller.getYaw(), traveller.getPitch());
+            }
+        });
 
-        return 1;
+        return scheduled ? 1 : 0;
     }
 
-    private static int denyTeleportRequest(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+    private static int denyTeleportRequest(CommandContext<ServerCommandSource> context, boolean named) throws CommandSyntaxException {
         ServerPlayerEntity target = context.getSource().getPlayerOrThrow();
-        TeleportRequest req;
-        synchronized (PENDING_REQUESTS) {
-            req = PENDING_REQUESTS.get(target.getUuid());
-        }
+        UUID requesterId = named ? EntityArgumentType.getPlayer(context, "player").getUuid() : null;
+        TeleportRequestManager.TeleportRequest req = TeleportRequestManager.take(target.getUuid(), requesterId);
 
         if (req == null) {
-            context.getSource().sendError(Text.literal("You have no pending teleport requests"));
+            context.getSource().sendError(Text.literal(named ? "You have no pending teleport request from that player" : "You have no pending teleport requests"));
             return 0;
         }
 
@@ -190,9 +198,24 @@ public class TeleportCommands {
         }
         target.sendMessage(Text.literal("Denied teleport request from " + req.requesterName).formatted(Formatting.RED));
 
-        synchronized (PENDING_REQUESTS) {
-            PENDING_REQUESTS.remove(target.getUuid());
+        return 1;
+    }
+
+    private static int cancelTeleportRequest(CommandContext<ServerCommandSource> context, boolean named) throws CommandSyntaxException {
+        ServerPlayerEntity requester = context.getSource().getPlayerOrThrow();
+        UUID targetId = named ? EntityArgumentType.getPlayer(context, "player").getUuid() : null;
+        TeleportRequestManager.TeleportRequest req = TeleportRequestManager.cancel(requester.getUuid(), targetId);
+
+        if (req == null) {
+            context.getSource().sendError(Text.literal("You have no outgoing teleport requests"));
+            return 0;
+        }
+
+        ServerPlayerEntity target = requester.getServer().getPlayerManager().getPlayer(req.target);
+        if (target != null) {
+            target.sendMessage(Text.literal(req.requesterName + " cancelled their teleport request").formatted(Formatting.GRAY));
         }
+        requester.sendMessage(Text.literal("Cancelled teleport request to " + req.targetName).formatted(Formatting.GRAY));
 
         return 1;
     }
@@ -1,8 +1,13 @@
 package com.essentialsforfabric.commands;
 
+import com.essentialsforfabric.config.EssentialsConfig;
 import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.data.WarpIndex;
+import com.essentialsforfabric.teleport.ChunkPreloader;
+import com.essentialsforfabric.teleport.TeleportScheduler;
 import com.essentialsforfabric.util.PermissionUtil;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
@@ -19,35 +24,59 @@ import net.minecraft.text.HoverEvent;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
 import net.minecraft.world.World;
+import com.essentialsforfabric.util.TextPages;
 import com.essentialsforfabric.util.WorldUtil;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class WarpCommands {
+    private static final int DEFAULT_NEAR_RADIUS = 256;
+    private static final int MAX_NEAR_RESULTS = 20;
+
+    private static TextPages warpPages;
+    private static int warpPagesVersion;
+
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("warp")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.warp", 0))
-            .executes(context -> listWarps(context))
+            .requires(PermissionUtil.require("essentials.warp", 0))
+            .executes(context -> listWarps(context, 1))
             .then(CommandManager.argument("name", StringArgumentType.string())
+                .suggests(NameSuggestions.WARPS)
                 .executes(context -> warp(context, StringArgumentType.getString(context, "name")))));
 
         dispatcher.register(CommandManager.literal("warps")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.warp", 0))
-            .executes(WarpCommands::listWarps));
+            .requires(PermissionUtil.require("essentials.warp", 0))
+            .executes(context -> listWarps(context, 1))
+            .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                .executes(context -> listWarps(context, IntegerArgumentType.getInteger(context, "page"))))
+            // Under /warps rather than /warp so that a warp can still be called "nearest"
+            .then(CommandManager.literal("nearest")
+                .executes(WarpCommands::warpNearest))
+            .then(CommandManager.literal("near")
+                .executes(context -> listNearbyWarps(context, DEFAULT_NEAR_RADIUS))
+                .then(CommandManager.argument("radius", IntegerArgumentType.integer(1))
+                    .executes(context -> listNearbyWarps(context, IntegerArgumentType.getInteger(context, "radius"))))));
 
         dispatcher.register(CommandManager.literal("setwarp")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.setwarp", 2))
+            .requires(PermissionUtil.require("essentials.setwarp", 2))
             .then(CommandManager.argument("name", StringArgumentType.string())
                 .executes(context -> setWarp(context, StringArgumentType.getString(context, "name")))));
 
         dispatcher.register(CommandManager.literal("delwarp")
-            .requires(source -> PermissionUtil.hasPermission(source, "essentials.delwarp", 2))
+            .requires(PermissionUtil.require("essentials.delwarp", 2))
             .then(CommandManager.argument("name", StringArgumentType.string())
+                .suggests(NameSuggestions.WARPS)
                 .executes(context -> deleteWarp(context, StringArgumentType.getString(context, "name")))));
     }
 
     private static int warp(CommandContext<ServerCommandSource> context, String warpName) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
         PlayerDataManager.WarpData warp = PlayerDataManager.getWarp(warpName);
 
         if (warp == null) {
@@ -55,8 +84,28 @@ public class WarpCommands {
             return 0;
         }
 
-        PlayerDataManager.setLastLocation(player);
+        return teleportToWarp(context, player, warpName, warp);
+    }
+
+    private static int warpNearest(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        if (PlayerDataManager.isLoading(player.getUuid())) {
+            context.getSource().sendError(Text.literal("Your data is still loading, please try again in a moment"));
+            return 0;
+        }
 
+        List<WarpIndex.Match> nearest = PlayerDataManager.getNearestWarps(
+            player.getWorld().getRegistryKey().getValue().toString(), player.getX(), player.getY(), player.getZ(), 1);
+        if (nearest.isEmpty()) {
+            context.getSource().sendError(Text.literal("There are no warps in this world"));
+            return 0;
+        }
+
+        WarpIndex.Match match = nearest.get(0);
+        return teleportToWarp(context, player, match.name(), match.warp());
+    }
+
+    private static int teleportToWarp(CommandContext<ServerCommandSource> context, ServerPlayerEntity player, String warpName, PlayerDataManager.WarpData warp) {
         RegistryKey<World> worldKey = RegistryKey.of(RegistryKeys.WORLD, new Identifier(warp.world));
         ServerWorld world = context.getSource().getServer().getWorld(worldKey);
 
@@ -65,10 +114,13 @@ public class WarpCommands {
             return 0;
         }
 
-        player.teleport(world, warp.x, warp.y, warp.z, warp.yaw, warp.pitch);
-        context.getSource().sendFeedback(() -> Text.literal("Teleported to warp: " + warpName), false);
+        boolean scheduled = TeleportScheduler.schedule(player, "warp", () -> ChunkPreloader.preload(player, world, warp.x, warp.z, () -> {
+            PlayerDataManager.setLastLocation(player);
+            player.teleport(world, warp.x, warp.y, warp.z, warp.yaw, warp.pitch);
+            context.getSource().sendFeedback(() -> Text.literal("Teleported to warp: " + warpName), false);
+        }));
 
-        return 1;
+        return scheduled ? 1 : 0;
     }
 
     private static int setWarp(CommandContext<ServerCommandSource> context, String warpName) throws CommandSyntaxException {
@@ -94,48 +146,82 @@ public class WarpCommands {
         return 1;
     }
 
-    private static int listWarps(CommandContext<ServerCommandSource> context) {
-        Map<String, PlayerDataManager.WarpData> warps = PlayerDataManager.getAllWarps();
+    private static int listWarps(CommandContext<ServerCommandSource> context, int page) {
+        TextPages pages = getWarpPages();
 
-        if (warps.isEmpty()) {
+        if (pages.getLineCount() == 0) {
             context.getSource().sendFeedback(() -> Text.literal("No warps available"), false);
             return 0;
         }
 
-        int count = warps.size();
-        context.getSource().sendFeedback(() -> Text.literal("Available warps (" + count + "):"), false);
+        Text text = pages.getPage(page);
+        if (text == null) {
+            context.getSource().sendError(Text.literal("Page " + page + " doesn't exist, there are " + pages.getPageCount() + " pages"));
+            return 0;
+        }
 
+        context.getSource().sendFeedback(() -> text, false);
+        return pages.getLineCount();
+    }
+
+    private static TextPages getWarpPages() {
+        int pageSize = Math.max(1, EssentialsConfig.get().listPageSize);
+        if (warpPages == null || warpPagesVersion != PlayerDataManager.getWarpsVersion() || warpPages.getPageSize() != pageSize) {
+            warpPages = renderWarpPages(PlayerDataManager.getAllWarps(), pageSize);
+            warpPagesVersion = PlayerDataManager.getWarpsVersion();
+        }
+        return warpPages;
+    }
+
+    static TextPages renderWarpPages(Map<String, PlayerDataManager.WarpData> warps, int pageSize) {
+        List<Text> lines = new ArrayList<>();
         warps.entrySet().stream()
             .sorted(Map.Entry.comparingByKey(String.CASE_INSENSITIVE_ORDER))
-            .forEachOrdered(entry -> {
-                String name = entry.getKey();
-                PlayerDataManager.WarpData loc = entry.getValue();
-
-                String worldLabel = WorldUtil.readableWorld(loc.world);
-                int ix = (int) Math.floor(loc.x);
-                int iy = (int) Math.floor(loc.y);
-                int iz = (int) Math.floor(loc.z);
-
-                MutableText line = Text.literal(" - ")
-                    .append(
-                        Text.literal("[Teleport]")
-                            .styled(style -> style
-                                .withColor(Formatting.GREEN)
-                                .withBold(true)
-                                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/warp " + name))
-                                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Click to teleport to '" + name + "'"))))
-                    )
-                    .append(Text.literal("  "))
-                    .append(Text.literal(name).formatted(Formatting.AQUA))
-                    .append(Text.literal("  "))
-                    .append(Text.literal("[" + worldLabel + "] ").formatted(Formatting.DARK_GRAY))
-                    .append(Text.literal(ix + ", " + iy + ", " + iz).formatted(Formatting.GRAY))
-                    .append(Text.literal("  "));
-
-                context.getSource().sendFeedback(() -> line, false);
-            });
-
-        return count;
+            .forEachOrdered(entry -> lines.add(warpLine(entry.getKey(), entry.getValue())));
+        return new TextPages("Available warps", lines, pageSize, "/warps");
+    }
+
+    private static int listNearbyWarps(CommandContext<ServerCommandSource> context, int radius) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrThrow();
+        List<WarpIndex.Match> nearby = PlayerDataManager.getWarpsWithin(
+            player.getWorld().getRegistryKey().getValue().toString(), player.getX(), player.getY(), player.getZ(), radius, MAX_NEAR_RESULTS);
+
+        if (nearby.isEmpty()) {
+            context.getSource().sendFeedback(() -> Text.literal("No warps within " + radius + " blocks"), false);
+            return 0;
+        }
+
+        context.getSource().sendFeedback(() -> Text.literal("Warps within " + radius + " blocks (nearest first):"), false);
+        for (WarpIndex.Match match : nearby) {
+            MutableText line = warpLine(match.name(), match.warp())
+                .append(Text.literal((int) Math.round(match.distance()) + "m").formatted(Formatting.GOLD));
+            context.getSource().sendFeedback(() -> line, false);
+        }
+
+        return nearby.size();
+    }
+
+    private static MutableText warpLine(String name, PlayerDataManager.WarpData loc) {
+        String worldLabel = WorldUtil.readableWorld(loc.world);
+        int ix = (int) Math.floor(loc.x);
+        int iy = (int) Math.floor(loc.y);
+        int iz = (int) Math.floor(loc.z);
+
+        return Text.literal(" - ")
+            .append(
+                Text.literal("[Teleport]")
+                    .styled(style -> style
+                        .withColor(Formatting.GREEN)
+                        .withBold(true)
+                        .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/warp " + name))
+                        .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal("Click to teleport to '" + name + "'"))))
+            )
+            .append(Text.literal("  "))
+            .append(Text.literal(name).formatted(Formatting.AQUA))
+            .append(Text.literal("  "))
+            .append(Text.literal("[" + worldLabel + "] ").formatted(Formatting.DARK_GRAY))
+            .append(Text.literal(ix + ", " + iy + ", " + iz).formatted(Formatting.GRAY))
+            .append(Text.literal("  "));
     }
 
 }
@@ -0,0 +1,89 @@
+package com.essentialsforfabric.config;
+
+import com.essentialsforfabric.EssentialsForFabric;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EssentialsConfig {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static EssentialsConfig instance = new EssentialsConfig();
+
+    // Persistence
+    public String storageFormat = "binary";
+    public String storageBackend = "files";
+    public int ioQueueCapacity = 256;
+    public int flushIntervalTicks = 20;
+    public int journalCompactionBytes = 16384;
+    public int unloadGraceTicks = 1200;
+    public int offlineCacheSize = 256;
+
+    // Commands
+    public int listPageSize = 10;
+    public int batchPlayersPerTick = 100;
+
+    // Teleports
+    public int tpaTimeoutTicks = 1200;
+    public int teleportWarmupTicks = 0;
+    public int teleportCooldownTicks = 0;
+    public int chunkPreloadTimeoutTicks = 100;
+    public int backHistorySize = 10;
+    public int rtpRadius = 5000;
+    public int rtpMinRadius = 500;
+    public int rtpPoolSize = 8;
+    public int rtpSearchesPerTick = 1;
+    public List<String> rtpDimensions = new ArrayList<>(List.of("minecraft:overworld"));
+
+    // AFK
+    public int afkSampleIntervalTicks = 20;
+    public int afkTimeoutTicks = 6000;
+    public int afkKickTicks = 0;
+    public boolean afkIgnoreSleep = true;
+
+    // Jobs
+    public int jobTargetMspt = 40;
+    public int jobMaxMillisPerTick = 10;
+
+    // Metrics
+    public int metricsPort = 0;
+
+    // Permissions
+    public int permissionCacheTicks = 1200;
+
+    public static EssentialsConfig get() {
+        return instance;
+    }
+
+    public static void load() {
+        Path configFile = FabricLoader.getInstance().getConfigDir().resolve(EssentialsForFabric.MOD_ID + ".json");
+
+        try {
+            if (Files.exists(configFile)) {
+                try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                    EssentialsConfig loaded = GSON.fromJson(reader, EssentialsConfig.class);
+                    if (loaded != null) {
+                        instance = loaded;
+                    }
+                }
+            }
+
+            // Write back so newly added options show up in existing files
+            Files.createDirectories(configFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
+                GSON.toJson(instance, writer);
+            }
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+        }
+    }
+}
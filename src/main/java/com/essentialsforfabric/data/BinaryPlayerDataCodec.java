@@ -0,0 +1,213 @@
+package com.essentialsforfabric.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact versioned snapshot format:
+ * <pre>
+ * int     magic ("EFFD")
+ * byte    version
+ * byte    kind (player or warps)
+ * varint  world count, then each world id as UTF
+ * player: byte flags (bit 0 = last location, bit 1 = back history, bit 2 = kit cooldowns present), [location],
+ *         varint home count, homes,
+ *         [back history: byte count, then per entry byte kind, UTF world, double x, y, z, float yaw, pitch],
+ *         [kit cooldowns: short count, then per entry UTF kit, long ready at (epoch millis)]
+ * warps:  varint warp count, warps
+ * entry:  UTF name, location
+ * location: varint world index, double x, y, z, float yaw, pitch
+ * </pre>
+ */
+public class BinaryPlayerDataCodec implements PlayerDataCodec {
+    private static final int MAGIC = 0x45464644;
+    private static final int VERSION = 1;
+    private static final int KIND_PLAYER = 0;
+    private static final int KIND_WARPS = 1;
+    private static final int FLAG_LAST_LOCATION = 1;
+    private static final int FLAG_BACK_HISTORY = 2;
+    private static final int FLAG_KIT_COOLDOWNS = 4;
+
+    @Override
+    public String extension() {
+        return ".dat";
+    }
+
+    @Override
+    public byte[] encodePlayerData(PlayerDataManager.PlayerData data) throws IOException {
+        Map<String, Integer> worlds = new LinkedHashMap<>();
+        if (data.lastLocation != null) {
+            worlds.putIfAbsent(data.lastLocation.world, worlds.size());
+        }
+        for (PlayerDataManager.LocationData location : data.homes.values()) {
+            worlds.putIfAbsent(location.world, worlds.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + data.homes.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, KIND_PLAYER, worlds);
+
+        out.writeByte((data.lastLocation != null ? FLAG_LAST_LOCATION : 0) | (data.backHistory != null ? FLAG_BACK_HISTORY : 0)
+            | (data.kitCooldowns != null ? FLAG_KIT_COOLDOWNS : 0));
+        if (data.lastLocation != null) {
+            writeLocation(out, data.lastLocation, worlds);
+        }
+
+        writeVarInt(out, data.homes.size());
+        for (Map.Entry<String, PlayerDataManager.LocationData> home : data.homes.entrySet()) {
+            out.writeUTF(home.getKey());
+            writeLocation(out, home.getValue(), worlds);
+        }
+
+        if (data.backHistory != null) {
+            data.backHistory.write(out);
+        }
+        if (data.kitCooldowns != null) {
+            data.kitCooldowns.write(out);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData decodePlayerData(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<String> worlds = readHeader(in, KIND_PLAYER);
+
+        PlayerDataManager.PlayerData data = new PlayerDataManager.PlayerData();
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_LAST_LOCATION) != 0) {
+            data.lastLocation = readLocation(in, worlds);
+        }
+
+        int homeCount = readVarInt(in);
+        data.homes = new HashMap<>(Math.max(16, homeCount * 2));
+        for (int i = 0; i < homeCount; i++) {
+            String name = in.readUTF();
+            data.homes.put(name, readLocation(in, worlds));
+        }
+
+        if ((flags & FLAG_BACK_HISTORY) != 0) {
+            data.backHistory = LocationHistory.read(in);
+        }
+        if ((flags & FLAG_KIT_COOLDOWNS) != 0) {
+            data.kitCooldowns = KitCooldowns.read(in);
+        }
+
+        return data;
+    }
+
+    @Override
+    public byte[] encodeWarps(Map<String, PlayerDataManager.WarpData> warps) throws IOException {
+        Map<String, Integer> worlds = new LinkedHashMap<>();
+        for (PlayerDataManager.WarpData warp : warps.values()) {
+            worlds.putIfAbsent(warp.world, worlds.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + warps.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, KIND_WARPS, worlds);
+
+        writeVarInt(out, warps.size());
+        for (Map.Entry<String, PlayerDataManager.WarpData> warp : warps.entrySet()) {
+            out.writeUTF(warp.getKey());
+            writeLocation(out, warp.getValue(), worlds);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> decodeWarps(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<String> worlds = readHeader(in, KIND_WARPS);
+
+        int warpCount = readVarInt(in);
+        Map<String, PlayerDataManager.WarpData> warps = new HashMap<>(Math.max(16, warpCount * 2));
+        for (int i = 0; i < warpCount; i++) {
+            String name = in.readUTF();
+            PlayerDataManager.LocationData location = readLocation(in, worlds);
+            warps.put(name, new PlayerDataManager.WarpData(location.world, location.x, location.y, location.z, location.yaw, location.pitch));
+        }
+
+        return warps;
+    }
+
+    private static void writeHeader(DataOutputStream out, int kind, Map<String, Integer> worlds) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        writeVarInt(out, worlds.size());
+        for (String world : worlds.keySet()) {
+            out.writeUTF(world);
+        }
+    }
+
+    private static List<String> readHeader(DataInputStream in, int expectedKind) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an essentials data file");
+        }
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported data file version " + version);
+        }
+
+        int kind = in.readUnsignedByte();
+        if (kind != expectedKind) {
+            throw new IOException("Unexpected data file kind " + kind);
+        }
+
+        int worldCount = readVarInt(in);
+        List<String> worlds = new ArrayList<>(worldCount);
+        for (int i = 0; i < worldCount; i++) {
+            worlds.add(in.readUTF().intern());
+        }
+        return worlds;
+    }
+
+    private static void writeLocation(DataOutputStream out, PlayerDataManager.LocationData location, Map<String, Integer> worlds) throws IOException {
+        writeVarInt(out, worlds.get(location.world));
+        out.writeDouble(location.x);
+        out.writeDouble(location.y);
+        out.writeDouble(location.z);
+        out.writeFloat(location.yaw);
+        out.writeFloat(location.pitch);
+    }
+
+    private static PlayerDataManager.LocationData readLocation(DataInputStream in, List<String> worlds) throws IOException {
+        int worldIndex = readVarInt(in);
+        if (worldIndex >= worlds.size()) {
+            throw new IOException("World index " + worldIndex + " out of range");
+        }
+        return new PlayerDataManager.LocationData(worlds.get(worldIndex), in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat());
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+}
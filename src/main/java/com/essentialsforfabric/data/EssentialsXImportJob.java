@@ -0,0 +1,530 @@
+package com.essentialsforfabric.data;
+
+import com.essentialsforfabric.jobs.Job;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports homes, last locations and warps from an EssentialsX plugin folder. Resumes from a
+ * checkpoint after a crash, and never overwrites anything already set on this server.
+ */
+public class EssentialsXImportJob implements Job {
+    private static final int CHUNK_SIZE = 256;
+    private static final int CHUNKS_AHEAD = 4;
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private static final String DEFAULT_LEVEL_NAME = "world";
+
+    private final Path source;
+    private final Path checkpointFile;
+    private final StorageBackend storage;
+    private final ForkJoinPool pool;
+    private final BlockingQueue<List<ImportedPlayer>> parsed = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    // Applied players whose writes may not have completed yet, oldest first
+    private final ArrayDeque<ImportedPlayer> unconfirmed = new ArrayDeque<>();
+    private final long failedWritesBefore;
+    // Locations left out because their world is not the level or one of its dimensions, by world
+    private final Map<String, LongAdder> skippedWorlds = new ConcurrentHashMap<>();
+
+    private Thread feeder;
+    private volatile boolean fed;
+    private volatile boolean stopped;
+    private volatile String feedError;
+    private volatile List<ImportedWarp> pendingWarps;
+    private volatile long total = -1;
+    private volatile long resumed;
+    private volatile String levelName = DEFAULT_LEVEL_NAME;
+
+    private List<ImportedPlayer> chunk = List.of();
+    private int chunkIndex;
+    private CompletableFuture<Void> pendingRead;
+    private long applied;
+    private long players;
+    private long homes;
+    private long existingHomes;
+    private long warps;
+    private long existingWarps;
+    private long errors;
+    private String firstError;
+    private String confirmedFile;
+    private int confirmedSinceCheckpoint;
+    private String savedCheckpoint;
+    private boolean finished;
+
+    public EssentialsXImportJob(Path source, Path checkpointFile, StorageBackend storage) {
+        this.source = source;
+        this.checkpointFile = checkpointFile;
+        this.storage = storage;
+        this.failedWritesBefore = PersistenceQueue.getWritesFailed();
+        this.pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Essentials-Import-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public String name() {
+        return "EssentialsX import";
+    }
+
+    @Override
+    public boolean isReady() {
+        if (feeder == null || feedError != null || pendingWarps != null) {
+            return true;
+        }
+        confirmWrites();
+        // Read before looking for work, so a last chunk queued in between is never missed
+        boolean done = fed;
+        ImportedPlayer next = peekPlayer();
+        if (next != null) {
+            return canApply(next);
+        }
+        return done && unconfirmed.isEmpty();
+    }
+
+    @Override
+    public boolean step() throws IOException {
+        if (feeder == null) {
+            feeder = new Thread(this::feed, "Essentials-Import");
+            feeder.setDaemon(true);
+            feeder.start();
+            return false;
+        }
+        if (feedError != null) {
+            throw new IOException(feedError);
+        }
+
+        List<ImportedWarp> warpsToApply = pendingWarps;
+        if (warpsToApply != null) {
+            pendingWarps = null;
+            applyWarps(warpsToApply);
+            return false;
+        }
+
+        confirmWrites();
+        boolean done = fed;
+        ImportedPlayer next = peekPlayer();
+        if (next == null) {
+            if (!done || !unconfirmed.isEmpty()) {
+                return false;
+            }
+            finish();
+            return true;
+        }
+        if (!canApply(next)) {
+            return false;
+        }
+
+        chunkIndex++;
+        apply(next);
+        return false;
+    }
+
+    @Override
+    public long progress() {
+        return resumed + applied;
+    }
+
+    @Override
+    public long total() {
+        return total;
+    }
+
+    @Override
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(players).append(" players with ").append(homes).append(" homes and ")
+            .append(warps).append(" warps imported");
+        if (existingHomes > 0 || existingWarps > 0) {
+            summary.append(", ").append(existingHomes).append(" homes and ").append(existingWarps).append(" warps already existed");
+        }
+        if (resumed > 0) {
+            summary.append(", ").append(resumed).append(" files skipped from an earlier run");
+        }
+        if (!skippedWorlds.isEmpty()) {
+            Map<String, LongAdder> byWorld = new TreeMap<>(skippedWorlds);
+            long skipped = byWorld.values().stream().mapToLong(LongAdder::sum).sum();
+            summary.append(", ").append(skipped).append(" locations skipped in worlds other than ").append(levelName)
+                .append(", ").append(levelName).append("_nether and ").append(levelName).append("_the_end (")
+                .append(String.join(", ", byWorld.keySet())).append(")");
+        }
+        if (errors > 0) {
+            summary.append(", ").append(errors).append(" files could not be read (first: ").append(firstError).append(")");
+        }
+        if (writesFailed()) {
+            summary.append("; some writes failed, run the import again to retry");
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        if (feeder != null) {
+            feeder.interrupt();
+        }
+        pool.shutdownNow();
+        if (confirmedFile != null && !writesFailed()) {
+            // Cancelled or failed part way; remember how far the data is safely on disk
+            saveCheckpoint(confirmedFile);
+        }
+    }
+
+    private void feed() {
+        try {
+            levelName = readLevelName();
+            pendingWarps = parseWarps(source.resolve("warps"));
+
+            Path userdata = source.resolve("userdata");
+            List<String> files = listYaml(userdata);
+            Collections.sort(files);
+            String resumeAfter = readCheckpoint();
+            int start = resumeAfter == null ? 0 : -Collections.binarySearch(files, resumeAfter + "\0") - 1;
+            resumed = start;
+            total = files.size();
+
+            for (int i = start; i < files.size() && !stopped; i += CHUNK_SIZE) {
+                List<String> names = files.subList(i, Math.min(files.size(), i + CHUNK_SIZE));
+                parsed.put(pool.submit(() -> names.parallelStream().map(name -> parsePlayer(userdata, name)).toList()).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            if (!stopped) {
+                e.printStackTrace();
+                feedError = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+        } finally {
+            fed = true;
+        }
+    }
+
+    private ImportedPlayer peekPlayer() {
+        if (chunkIndex >= chunk.size()) {
+            List<ImportedPlayer> next = parsed.poll();
+            if (next == null) {
+                return null;
+            }
+            chunk = next;
+            chunkIndex = 0;
+        }
+        return chunk.get(chunkIndex);
+    }
+
+    /**
+     * Whether the player can be merged now. Cached players are merged into the cached copy; for
+     * everyone else their stored data has to be read first, which is requested here if needed.
+     */
+    private boolean canApply(ImportedPlayer player) {
+        if (!needsRead(player)) {
+            return true;
+        }
+        requestReads();
+        return false;
+    }
+
+    private static boolean needsRead(ImportedPlayer player) {
+        return player.error == null && (!player.homes.isEmpty() || player.lastLocation != null)
+            && !player.loaded && !PlayerDataManager.getCache().contains(player.playerId);
+    }
+
+    /**
+     * Reads the stored data of the rest of the chunk on the I/O thread, behind any writes already
+     * submitted. Players with records not yet flushed are left for a later batch, since the read
+     * would miss those records.
+     */
+    private void requestReads() {
+        if (pendingRead != null && !pendingRead.isDone()) {
+            return;
+        }
+        List<ImportedPlayer> batch = new ArrayList<>();
+        for (int i = chunkIndex; i < chunk.size(); i++) {
+            ImportedPlayer player = chunk.get(i);
+            if (needsRead(player) && !PersistenceQueue.isBusy(player.playerId)) {
+                batch.add(player);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        pendingRead = PersistenceQueue.submitRead(() -> {
+            for (ImportedPlayer player : batch) {
+                try {
+                    player.stored = storage.loadPlayer(player.playerId);
+                } catch (IOException e) {
+                    player.error = "userdata/" + player.file + ": " + e.getMessage();
+                }
+                player.loaded = true;
+            }
+            return null;
+        });
+    }
+
+    private void apply(ImportedPlayer player) {
+        if (player.error != null) {
+            errors++;
+            if (firstError == null) {
+                firstError = player.error;
+            }
+        } else if (!player.homes.isEmpty() || player.lastLocation != null) {
+            int added = PlayerDataManager.importPlayer(player.playerId, player.name, player.stored, player.homes, player.lastLocation);
+            homes += added;
+            existingHomes += player.homes.size() - added;
+            players++;
+        }
+        applied++;
+        unconfirmed.addLast(player);
+    }
+
+    private void applyWarps(List<ImportedWarp> parsedWarps) {
+        for (ImportedWarp warp : parsedWarps) {
+            if (warp.error != null) {
+                errors++;
+                if (firstError == null) {
+                    firstError = warp.error;
+                }
+            } else if (warp.warp == null) {
+                // In another world, already counted as skipped
+            } else if (PlayerDataManager.importWarp(warp.name, warp.warp)) {
+                warps++;
+            } else {
+                existingWarps++;
+            }
+        }
+    }
+
+    /**
+     * Moves the checkpoint past every applied player whose records have been written.
+     */
+    private void confirmWrites() {
+        while (!unconfirmed.isEmpty()) {
+            ImportedPlayer head = unconfirmed.peekFirst();
+            if (head.playerId != null && PersistenceQueue.isBusy(head.playerId)) {
+                return;
+            }
+            unconfirmed.removeFirst();
+            if (writesFailed()) {
+                // Leave the checkpoint where it was so a rerun covers the lost writes
+                continue;
+            }
+            confirmedFile = head.file;
+            if (++confirmedSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                confirmedSinceCheckpoint = 0;
+                String file = confirmedFile;
+                pool.execute(() -> saveCheckpoint(file));
+            }
+        }
+    }
+
+    private boolean writesFailed() {
+        return PersistenceQueue.getWritesFailed() > failedWritesBefore;
+    }
+
+    private synchronized void finish() {
+        finished = true;
+        if (writesFailed()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(checkpointFile, StandardCharsets.UTF_8);
+        // A checkpoint left by an import from another folder means nothing here
+        if (lines.size() < 2 || !lines.get(0).equals(source.toString())) {
+            return null;
+        }
+        return lines.get(1);
+    }
+
+    private synchronized void saveCheckpoint(String file) {
+        // Saves can finish out of order on the pool; never move the checkpoint backwards
+        if (finished || savedCheckpoint != null && savedCheckpoint.compareTo(file) >= 0) {
+            return;
+        }
+        try {
+            PersistenceQueue.writeAtomically(checkpointFile, (source + "\n" + file + "\n").getBytes(StandardCharsets.UTF_8));
+            savedCheckpoint = file;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The Bukkit level name from the server.properties two folders up from plugins/Essentials.
+     */
+    private String readLevelName() throws IOException {
+        Path serverRoot = source.getParent() != null ? source.getParent().getParent() : null;
+        Path properties = serverRoot != null ? serverRoot.resolve("server.properties") : null;
+        if (properties == null || !Files.isRegularFile(properties)) {
+            return DEFAULT_LEVEL_NAME;
+        }
+        Properties values = new Properties();
+        try (Reader reader = Files.newBufferedReader(properties, StandardCharsets.ISO_8859_1)) {
+            values.load(reader);
+        }
+        String name = values.getProperty("level-name", "").trim();
+        return name.isEmpty() ? DEFAULT_LEVEL_NAME : name;
+    }
+
+    private static List<String> listYaml(Path directory) throws IOException {
+        List<String> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.yml")) {
+            for (Path file : stream) {
+                files.add(file.getFileName().toString());
+            }
+        }
+        return files;
+    }
+
+    private List<ImportedWarp> parseWarps(Path directory) throws IOException, InterruptedException, ExecutionException {
+        List<String> files = listYaml(directory);
+        return pool.submit(() -> files.parallelStream().map(name -> parseWarp(directory, name)).toList()).get();
+    }
+
+    private ImportedWarp parseWarp(Path directory, String file) {
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(file), StandardCharsets.UTF_8)) {
+            Map<String, String> values = EssentialsXYaml.read(reader);
+            PlayerDataManager.LocationData location = readLocation(values, "");
+            if (location == null) {
+                // A warp in another world was counted by readLocation and is left out quietly
+                return worldOf(values, "") != null ? new ImportedWarp(null, null, null)
+                    : new ImportedWarp(null, null, "warps/" + file + ": no location");
+            }
+            String name = values.getOrDefault("name", file.substring(0, file.length() - ".yml".length()));
+            return new ImportedWarp(name.toLowerCase(Locale.ROOT), new PlayerDataManager.WarpData(location.world,
+                location.x, location.y, location.z, location.yaw, location.pitch), null);
+        } catch (IOException | RuntimeException e) {
+            return new ImportedWarp(null, null, "warps/" + file + ": " + e.getMessage());
+        }
+    }
+
+    private ImportedPlayer parsePlayer(Path directory, String file) {
+        UUID playerId;
+        try {
+            playerId = UUID.fromString(file.substring(0, file.length() - ".yml".length()));
+        } catch (IllegalArgumentException e) {
+            return ImportedPlayer.failed(file, "userdata/" + file + ": not named after a player UUID");
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(file), StandardCharsets.UTF_8)) {
+            Map<String, String> values = EssentialsXYaml.read(reader);
+            Map<String, PlayerDataManager.LocationData> playerHomes = new LinkedHashMap<>();
+            for (String key : values.keySet()) {
+                if (key.startsWith("homes.") && key.endsWith(".x")) {
+                    String home = key.substring("homes.".length(), key.length() - ".x".length());
+                    PlayerDataManager.LocationData location = readLocation(values, "homes." + home + ".");
+                    if (location != null) {
+                        playerHomes.put(home.toLowerCase(Locale.ROOT), location);
+                    }
+                }
+            }
+            PlayerDataManager.LocationData lastLocation = readLocation(values, "lastlocation.");
+            return new ImportedPlayer(file, playerId, values.get("lastAccountName"), playerHomes, lastLocation, null);
+        } catch (IOException | RuntimeException e) {
+            return ImportedPlayer.failed(file, "userdata/" + file + ": " + e.getMessage());
+        }
+    }
+
+    private PlayerDataManager.LocationData readLocation(Map<String, String> values, String prefix) {
+        String world = worldOf(values, prefix);
+        String x = values.get(prefix + "x");
+        String y = values.get(prefix + "y");
+        String z = values.get(prefix + "z");
+        if (world == null || x == null || y == null || z == null) {
+            return null;
+        }
+        String dimension = mapWorld(world);
+        if (dimension == null) {
+            skippedWorlds.computeIfAbsent(world, k -> new LongAdder()).increment();
+            return null;
+        }
+        return new PlayerDataManager.LocationData(dimension, Double.parseDouble(x), Double.parseDouble(y), Double.parseDouble(z),
+            Float.parseFloat(values.getOrDefault(prefix + "yaw", "0")), Float.parseFloat(values.getOrDefault(prefix + "pitch", "0")));
+    }
+
+    private static String worldOf(Map<String, String> values, String prefix) {
+        return values.getOrDefault(prefix + "world-name", values.get(prefix + "world"));
+    }
+
+    /**
+     * Bukkit keeps each dimension as its own world named after the level, e.g. world_nether.
+     *
+     * @return the matching dimension, or {@code null} for worlds that are not part of the level
+     */
+    private String mapWorld(String world) {
+        if (world.equalsIgnoreCase(levelName)) {
+            return "minecraft:overworld";
+        }
+        if (world.equalsIgnoreCase(levelName + "_nether")) {
+            return "minecraft:the_nether";
+        }
+        if (world.equalsIgnoreCase(levelName + "_the_end")) {
+            return "minecraft:the_end";
+        }
+        return null;
+    }
+
+    private static class ImportedPlayer {
+        final String file;
+        final UUID playerId;
+        final String name;
+        final Map<String, PlayerDataManager.LocationData> homes;
+        final PlayerDataManager.LocationData lastLocation;
+        // Set on the I/O thread, read on the server thread once the read's future is done
+        volatile PlayerDataManager.PlayerData stored;
+        volatile boolean loaded;
+        volatile String error;
+
+        ImportedPlayer(String file, UUID playerId, String name, Map<String, PlayerDataManager.LocationData> homes,
+                       PlayerDataManager.LocationData lastLocation, String error) {
+            this.file = file;
+            this.playerId = playerId;
+            this.name = name;
+            this.homes = homes;
+            this.lastLocation = lastLocation;
+            this.error = error;
+        }
+
+        static ImportedPlayer failed(String file, String error) {
+            return new ImportedPlayer(file, null, null, Map.of(), null, error);
+        }
+    }
+
+    private record ImportedWarp(String name, PlayerDataManager.WarpData warp, String error) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.essentialsforfabric.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the nested maps of scalars in EssentialsX userdata and warps into dotted keys such as {@code homes.base.x}.
+ */
+class EssentialsXYaml {
+    static Map<String, String> read(BufferedReader reader) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        List<Integer> indents = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int skipDeeperThan = -1;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int indent = 0;
+            while (indent < line.length() && line.charAt(indent) == ' ') {
+                indent++;
+            }
+            if (indent == line.length() || line.charAt(indent) == '#') {
+                continue;
+            }
+            if (skipDeeperThan >= 0) {
+                if (indent > skipDeeperThan) {
+                    continue;
+                }
+                skipDeeperThan = -1;
+            }
+
+            String content = line.substring(indent);
+            if (content.equals("-") || content.startsWith("- ") || content.startsWith("---")) {
+                continue;
+            }
+            int colon = findSeparator(content);
+            if (colon < 0) {
+                continue;
+            }
+
+            while (!indents.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+                indents.remove(indents.size() - 1);
+                keys.remove(keys.size() - 1);
+            }
+            String key = unquote(content.substring(0, colon).trim());
+            String value = stripComment(content.substring(colon + 1)).trim();
+
+            if (value.isEmpty()) {
+                indents.add(indent);
+                keys.add(key);
+            } else if (value.startsWith("|") || value.startsWith(">")) {
+                skipDeeperThan = indent;
+            } else {
+                values.put(path(keys, key), unquote(value));
+            }
+        }
+        return values;
+    }
+
+    private static String path(List<String> keys, String key) {
+        if (keys.isEmpty()) {
+            return key;
+        }
+        return String.join(".", keys) + "." + key;
+    }
+
+    /**
+     * Index of the colon ending the key, ignoring any inside quotes, or -1 if there is none.
+     */
+    private static int findSeparator(String content) {
+        char quote = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ':' && (i + 1 == content.length() || content.charAt(i + 1) == ' ')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String stripComment(String value) {
+        char quote = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '#' && (i == 0 || value.charAt(i - 1) == ' ')) {
+                return value.substring(0, i);
+            }
+        }
+        return value;
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && text.charAt(0) == '\'' && text.endsWith("'")) {
+            return text.substring(1, text.length() - 1).replace("''", "'");
+        }
+        if (text.length() >= 2 && text.charAt(0) == '"' && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        return text;
+    }
+}
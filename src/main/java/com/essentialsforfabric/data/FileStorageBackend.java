@@ -0,0 +1,234 @@
+package com.essentialsforfabric.data;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One snapshot file plus journal per player in {@code essentials/playerdata}, and
+ * {@code essentials/warps} with its own journal for warps.
+ */
+public class FileStorageBackend implements StorageBackend {
+    private static final AtomicLong migratedFiles = new AtomicLong();
+
+    private final Path directory;
+    private final Path playerDirectory;
+
+    public FileStorageBackend(Path directory) {
+        this.directory = directory;
+        this.playerDirectory = directory.resolve("playerdata");
+    }
+
+    public Path getPlayerFile(UUID playerId) {
+        return playerDirectory.resolve(playerId + PlayerDataCodec.active().extension());
+    }
+
+    public Path getWarpsFile() {
+        return directory.resolve("warps" + PlayerDataCodec.active().extension());
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData loadPlayer(UUID playerId) throws IOException {
+        return readPlayerData(getPlayerFile(playerId));
+    }
+
+    @Override
+    public void savePlayer(UUID playerId, PlayerDataManager.PlayerData data) throws IOException {
+        Path playerFile = getPlayerFile(playerId);
+        PersistenceQueue.writeAtomically(playerFile, PlayerDataCodec.active().encodePlayerData(data));
+        Journal.delete(Journal.journalFor(playerFile));
+    }
+
+    @Override
+    public void writePlayer(UUID playerId, List<JournalRecord> records) throws IOException {
+        Path playerFile = getPlayerFile(playerId);
+        convertLegacy(playerFile, bytes -> {
+            PlayerDataManager.PlayerData legacy = PlayerDataCodec.inactive().decodePlayerData(bytes);
+            return legacy != null ? PlayerDataCodec.active().encodePlayerData(legacy) : null;
+        });
+        PersistenceQueue.appendJournal(playerFile, records, FileStorageBackend::compactPlayerData);
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> loadWarps() throws IOException {
+        return readWarps(getWarpsFile());
+    }
+
+    @Override
+    public void writeWarps(List<JournalRecord> records) throws IOException {
+        Path warpsFile = getWarpsFile();
+        convertLegacy(warpsFile, bytes -> PlayerDataCodec.active().encodeWarps(PlayerDataCodec.inactive().decodeWarps(bytes)));
+        PersistenceQueue.appendJournal(warpsFile, records, FileStorageBackend::compactWarps);
+    }
+
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        for (UUID playerId : listPlayers()) {
+            PlayerDataManager.PlayerData data = loadPlayer(playerId);
+            if (data != null) {
+                visitor.visit(playerId, data);
+            }
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "files";
+    }
+
+    /**
+     * Removes every file belonging to the player, including migration backups.
+     */
+    public void delete(UUID playerId) throws IOException {
+        for (PlayerDataCodec codec : new PlayerDataCodec[]{PlayerDataCodec.JSON, PlayerDataCodec.BINARY}) {
+            Files.deleteIfExists(playerDirectory.resolve(playerId + codec.extension()));
+            Files.deleteIfExists(playerDirectory.resolve(playerId + codec.extension() + ".bak"));
+        }
+        Journal.delete(Journal.journalFor(getPlayerFile(playerId)));
+    }
+
+    public boolean exists(UUID playerId) {
+        return Files.exists(getPlayerFile(playerId))
+            || Files.exists(playerDirectory.resolve(playerId + PlayerDataCodec.inactive().extension()))
+            || Files.exists(Journal.journalFor(getPlayerFile(playerId)));
+    }
+
+    public boolean hasWarps() {
+        Path warpsFile = getWarpsFile();
+        return Files.exists(warpsFile) || Files.exists(legacyFile(warpsFile)) || Files.exists(Journal.journalFor(warpsFile));
+    }
+
+    /**
+     * Removes the warps snapshot and journal, keeping a backup of the snapshot.
+     */
+    public void retireWarps() throws IOException {
+        Path warpsFile = getWarpsFile();
+        if (Files.exists(warpsFile)) {
+            Files.move(warpsFile, warpsFile.resolveSibling(warpsFile.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Journal.delete(Journal.journalFor(warpsFile));
+    }
+
+    public Set<UUID> listPlayers() throws IOException {
+        Set<UUID> players = new LinkedHashSet<>();
+        if (!Files.isDirectory(playerDirectory)) {
+            return players;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(playerDirectory)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                int extension = fileName.indexOf('.');
+                if (extension <= 0 || fileName.endsWith(".tmp") || fileName.endsWith(".bak")) {
+                    continue;
+                }
+                try {
+                    players.add(UUID.fromString(fileName.substring(0, extension)));
+                } catch (IllegalArgumentException ignored) {
+                    // Not a player file
+                }
+            }
+        }
+        return players;
+    }
+
+    static PlayerDataManager.PlayerData readPlayerData(Path playerFile) throws IOException {
+        PlayerDataCodec codec = PlayerDataCodec.active();
+        PlayerDataManager.PlayerData data = null;
+
+        if (Files.exists(playerFile)) {
+            data = codec.decodePlayerData(Files.readAllBytes(playerFile));
+        } else {
+            Path legacyFile = legacyFile(playerFile);
+            if (Files.exists(legacyFile)) {
+                // Only converted by the next write, since reads must never write
+                data = PlayerDataCodec.inactive().decodePlayerData(Files.readAllBytes(legacyFile));
+            }
+        }
+
+        Path journalFile = Journal.journalFor(playerFile);
+        if (Files.exists(journalFile)) {
+            PlayerDataManager.PlayerData target = data != null ? data : new PlayerDataManager.PlayerData();
+            if (Journal.replay(journalFile, record -> record.applyTo(target)) > 0) {
+                data = target;
+            }
+        }
+
+        return data;
+    }
+
+    static Map<String, PlayerDataManager.WarpData> readWarps(Path warpsFile) throws IOException {
+        PlayerDataCodec codec = PlayerDataCodec.active();
+        Map<String, PlayerDataManager.WarpData> loadedWarps = new HashMap<>();
+
+        if (Files.exists(warpsFile)) {
+            loadedWarps.putAll(codec.decodeWarps(Files.readAllBytes(warpsFile)));
+        } else {
+            Path legacyFile = legacyFile(warpsFile);
+            if (Files.exists(legacyFile)) {
+                loadedWarps.putAll(PlayerDataCodec.inactive().decodeWarps(Files.readAllBytes(legacyFile)));
+            }
+        }
+
+        Journal.replay(Journal.journalFor(warpsFile), record -> record.applyTo(loadedWarps));
+        return loadedWarps;
+    }
+
+    private static Path legacyFile(Path snapshotFile) {
+        String fileName = snapshotFile.getFileName().toString();
+        String baseName = fileName.substring(0, fileName.length() - PlayerDataCodec.active().extension().length());
+        return snapshotFile.resolveSibling(baseName + PlayerDataCodec.inactive().extension());
+    }
+
+    @FunctionalInterface
+    private interface Converter {
+        // null if there is nothing worth keeping
+        byte[] convert(byte[] legacy) throws IOException;
+    }
+
+    /**
+     * Rewrites a snapshot still in the other format into the active one before it is written to.
+     * Only called on the I/O thread.
+     */
+    private static void convertLegacy(Path snapshotFile, Converter converter) throws IOException {
+        Path legacyFile = legacyFile(snapshotFile);
+        if (Files.exists(snapshotFile) || !Files.exists(legacyFile)) {
+            return;
+        }
+        byte[] converted = converter.convert(Files.readAllBytes(legacyFile));
+        if (converted == null) {
+            return;
+        }
+        PersistenceQueue.writeAtomically(snapshotFile, converted);
+        // Keep the old file around as a backup instead of deleting it outright
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        migratedFiles.incrementAndGet();
+    }
+
+    public static long getMigratedFiles() {
+        return migratedFiles.get();
+    }
+
+    static void compactPlayerData(Path playerFile, Path journalFile) throws IOException {
+        PlayerDataManager.PlayerData data = readPlayerData(playerFile);
+        if (data != null) {
+            PersistenceQueue.writeAtomically(playerFile, PlayerDataCodec.active().encodePlayerData(data));
+        }
+        Journal.delete(journalFile);
+    }
+
+    static void compactWarps(Path warpsFile, Path journalFile) throws IOException {
+        Map<String, PlayerDataManager.WarpData> snapshot = readWarps(warpsFile);
+        PersistenceQueue.writeAtomically(warpsFile, PlayerDataCodec.active().encodeWarps(snapshot));
+        Journal.delete(journalFile);
+    }
+}
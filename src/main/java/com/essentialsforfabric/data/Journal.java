@@ -0,0 +1,185 @@
+package com.essentialsforfabric.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only mutation log next to a store's snapshot file. Replay never writes; a torn tail is
+ * cut off by the next append, which only happens on the I/O thread.
+ */
+public class Journal {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    // Lengths this process wrote or checked itself, so appends can skip re-reading the file
+    private static final Map<Path, Long> verifiedLengths = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    interface FrameWriter<T> {
+        void write(T value, DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface FrameReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    public static Path journalFor(Path snapshotFile) {
+        String fileName = snapshotFile.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return snapshotFile.resolveSibling((extension < 0 ? fileName : fileName.substring(0, extension)) + ".journal");
+    }
+
+    /**
+     * Appends a batch of records and forces them to disk with a single fsync.
+     *
+     * @return the size of the journal after the append
+     */
+    public static long append(Path journalFile, List<JournalRecord> records) throws IOException {
+        return appendFrames(journalFile, records, JournalRecord::write);
+    }
+
+    /**
+     * Replays every intact record in order.
+     *
+     * @return the number of records applied
+     */
+    public static int replay(Path journalFile, Consumer<JournalRecord> consumer) throws IOException {
+        return replayFrames(journalFile, JournalRecord::read, consumer);
+    }
+
+    /**
+     * Appends any kind of value in journal framing, so other logs get the same torn-write handling.
+     */
+    static <T> long appendFrames(Path journalFile, List<T> values, FrameWriter<T> writer) throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(values.size() * 64);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        DataOutputStream batchOut = new DataOutputStream(batch);
+        CRC32 crc = new CRC32();
+
+        for (T value : values) {
+            payload.reset();
+            writer.write(value, payloadOut);
+
+            crc.reset();
+            crc.update(payload.toByteArray());
+            batchOut.writeInt(payload.size());
+            batchOut.writeInt((int) crc.getValue());
+            payload.writeTo(batchOut);
+        }
+
+        Files.createDirectories(journalFile.getParent());
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Long verified = verifiedLengths.get(journalFile);
+            long validLength = verified != null && verified == channel.size() ? verified : scan(journalFile, null, null);
+            if (validLength < channel.size()) {
+                // Drop a torn tail so the new records don't land behind garbage
+                channel.truncate(validLength);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            long position = validLength;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            verifiedLengths.put(journalFile, position);
+            return position;
+        } catch (IOException e) {
+            verifiedLengths.remove(journalFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Replays every intact record of any kind of value. Stops at a torn frame but leaves it in place.
+     */
+    static <T> int replayFrames(Path journalFile, FrameReader<T> reader, Consumer<T> consumer) throws IOException {
+        int[] count = new int[1];
+        scan(journalFile, reader, value -> {
+            consumer.accept(value);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Walks the intact frames, decoding them if a reader is given.
+     *
+     * @return the length of the file up to the end of the last intact frame
+     */
+    private static <T> long scan(Path journalFile, FrameReader<T> reader, Consumer<T> consumer) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return 0;
+        }
+
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+
+        try (InputStream stream = Files.newInputStream(journalFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                if (reader != null) {
+                    T value;
+                    try {
+                        value = reader.read(new DataInputStream(new ByteArrayInputStream(payload)));
+                    } catch (IOException e) {
+                        break;
+                    }
+                    consumer.accept(value);
+                }
+                validLength += HEADER_SIZE + length;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Must be called when a journal is replaced by some other means than appending to it.
+     */
+    static void forget(Path journalFile) {
+        verifiedLengths.remove(journalFile);
+    }
+
+    public static void delete(Path journalFile) throws IOException {
+        verifiedLengths.remove(journalFile);
+        Files.deleteIfExists(journalFile);
+    }
+}
@@ -0,0 +1,142 @@
+package com.essentialsforfabric.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A single store mutation as written to a {@link Journal}. Every record carries the absolute
+ * new state of one key, so replaying a record more than once yields the same result.
+ */
+public class JournalRecord {
+    public enum Type {
+        SET_HOME,
+        DEL_HOME,
+        SET_LAST_LOCATION,
+        SET_WARP,
+        DEL_WARP,
+        SET_BACK_HISTORY,
+        SET_KIT_COOLDOWNS
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    public final Type type;
+    public final String name;
+    public final PlayerDataManager.LocationData location;
+    public final LocationHistory history;
+    public final KitCooldowns cooldowns;
+
+    private JournalRecord(Type type, String name, PlayerDataManager.LocationData location) {
+        this(type, name, location, null, null);
+    }
+
+    private JournalRecord(Type type, String name, PlayerDataManager.LocationData location, LocationHistory history, KitCooldowns cooldowns) {
+        this.type = type;
+        this.name = name;
+        this.location = location;
+        this.history = history;
+        this.cooldowns = cooldowns;
+    }
+
+    public static JournalRecord setHome(String name, PlayerDataManager.LocationData location) {
+        return new JournalRecord(Type.SET_HOME, name, location);
+    }
+
+    public static JournalRecord deleteHome(String name) {
+        return new JournalRecord(Type.DEL_HOME, name, null);
+    }
+
+    public static JournalRecord setLastLocation(PlayerDataManager.LocationData location) {
+        return new JournalRecord(Type.SET_LAST_LOCATION, null, location);
+    }
+
+    public static JournalRecord setBackHistory(LocationHistory history) {
+        return new JournalRecord(Type.SET_BACK_HISTORY, null, null, history, null);
+    }
+
+    public static JournalRecord setKitCooldowns(KitCooldowns cooldowns) {
+        return new JournalRecord(Type.SET_KIT_COOLDOWNS, null, null, null, cooldowns);
+    }
+
+    public static JournalRecord setWarp(String name, PlayerDataManager.LocationData location) {
+        return new JournalRecord(Type.SET_WARP, name, location);
+    }
+
+    public static JournalRecord deleteWarp(String name) {
+        return new JournalRecord(Type.DEL_WARP, name, null);
+    }
+
+    /**
+     * Whether this record makes {@code other} redundant when both are still waiting to be flushed.
+     */
+    public boolean supersedes(JournalRecord other) {
+        return switch (type) {
+            case SET_LAST_LOCATION -> other.type == Type.SET_LAST_LOCATION;
+            case SET_BACK_HISTORY -> other.type == Type.SET_BACK_HISTORY || other.type == Type.SET_LAST_LOCATION;
+            case SET_KIT_COOLDOWNS -> other.type == Type.SET_KIT_COOLDOWNS;
+            case SET_HOME, DEL_HOME -> (other.type == Type.SET_HOME || other.type == Type.DEL_HOME) && name.equals(other.name);
+            case SET_WARP, DEL_WARP -> (other.type == Type.SET_WARP || other.type == Type.DEL_WARP) && name.equals(other.name);
+        };
+    }
+
+    public void applyTo(PlayerDataManager.PlayerData data) {
+        switch (type) {
+            case SET_HOME -> data.homes.put(name, location);
+            case DEL_HOME -> data.homes.remove(name);
+            case SET_LAST_LOCATION -> data.lastLocation = location;
+            case SET_BACK_HISTORY -> data.backHistory = history;
+            case SET_KIT_COOLDOWNS -> data.kitCooldowns = cooldowns;
+            default -> {
+            }
+        }
+    }
+
+    public void applyTo(Map<String, PlayerDataManager.WarpData> warps) {
+        switch (type) {
+            case SET_WARP -> warps.put(name, new PlayerDataManager.WarpData(location.world, location.x, location.y, location.z, location.yaw, location.pitch));
+            case DEL_WARP -> warps.remove(name);
+            default -> {
+            }
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        if (name != null) {
+            out.writeUTF(name);
+        }
+        if (location != null) {
+            out.writeUTF(location.world);
+            out.writeDouble(location.x);
+            out.writeDouble(location.y);
+            out.writeDouble(location.z);
+            out.writeFloat(location.yaw);
+            out.writeFloat(location.pitch);
+        }
+        if (history != null) {
+            history.write(out);
+        }
+        if (cooldowns != null) {
+            cooldowns.write(out);
+        }
+    }
+
+    public static JournalRecord read(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= TYPES.length) {
+            throw new IOException("Unknown journal record type " + ordinal);
+        }
+
+        Type type = TYPES[ordinal];
+        String name = type == Type.SET_LAST_LOCATION || type == Type.SET_BACK_HISTORY || type == Type.SET_KIT_COOLDOWNS ? null : in.readUTF();
+        PlayerDataManager.LocationData location = null;
+        if (type == Type.SET_HOME || type == Type.SET_LAST_LOCATION || type == Type.SET_WARP) {
+            location = new PlayerDataManager.LocationData(in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat());
+        }
+        LocationHistory history = type == Type.SET_BACK_HISTORY ? LocationHistory.read(in) : null;
+        KitCooldowns cooldowns = type == Type.SET_KIT_COOLDOWNS ? KitCooldowns.read(in) : null;
+        return new JournalRecord(type, name, location, history, cooldowns);
+    }
+}
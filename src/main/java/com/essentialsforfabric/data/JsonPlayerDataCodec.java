@@ -0,0 +1,55 @@
+package com.essentialsforfabric.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonPlayerDataCodec implements PlayerDataCodec {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type WARPS_TYPE = new TypeToken<Map<String, PlayerDataManager.WarpData>>(){}.getType();
+
+    @Override
+    public String extension() {
+        return ".json";
+    }
+
+    @Override
+    public byte[] encodePlayerData(PlayerDataManager.PlayerData data) {
+        return GSON.toJson(data).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData decodePlayerData(byte[] bytes) throws IOException {
+        try {
+            PlayerDataManager.PlayerData data = GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), PlayerDataManager.PlayerData.class);
+            if (data != null && data.homes == null) {
+                data.homes = new HashMap<>();
+            }
+            return data;
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public byte[] encodeWarps(Map<String, PlayerDataManager.WarpData> warps) {
+        return GSON.toJson(warps).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> decodeWarps(byte[] bytes) throws IOException {
+        try {
+            Map<String, PlayerDataManager.WarpData> warps = GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), WARPS_TYPE);
+            return warps != null ? warps : new HashMap<>();
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+}
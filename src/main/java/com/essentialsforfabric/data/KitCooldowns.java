@@ -0,0 +1,112 @@
+package com.essentialsforfabric.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * When a player may next claim each kit, as epoch milliseconds.
+ */
+public class KitCooldowns {
+    // Kits that can only ever be claimed once
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private String[] kits;
+    private long[] readyAt;
+    private int size;
+
+    public KitCooldowns() {
+        this(2);
+    }
+
+    private KitCooldowns(int capacity) {
+        this.kits = new String[capacity];
+        this.readyAt = new long[capacity];
+    }
+
+    /**
+     * @return when the kit can be claimed again, or 0 if it is not on cooldown
+     */
+    public long getReadyAt(String kit) {
+        for (int i = 0; i < size; i++) {
+            if (kits[i].equals(kit)) {
+                return readyAt[i];
+            }
+        }
+        return 0;
+    }
+
+    public void set(String kit, long readyAtMillis, long nowMillis) {
+        int write = 0;
+        boolean found = false;
+        for (int i = 0; i < size; i++) {
+            if (kits[i].equals(kit)) {
+                readyAt[i] = readyAtMillis;
+                found = true;
+            } else if (readyAt[i] <= nowMillis) {
+                continue;
+            }
+            kits[write] = kits[i];
+            readyAt[write] = readyAt[i];
+            write++;
+        }
+        Arrays.fill(kits, write, size, null);
+        size = write;
+
+        if (!found) {
+            if (size == kits.length) {
+                kits = Arrays.copyOf(kits, size * 2);
+                readyAt = Arrays.copyOf(readyAt, size * 2);
+            }
+            kits[size] = kit;
+            readyAt[size] = readyAtMillis;
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public KitCooldowns copy() {
+        KitCooldowns copy = new KitCooldowns(Math.max(2, size));
+        System.arraycopy(kits, 0, copy.kits, 0, size);
+        System.arraycopy(readyAt, 0, copy.readyAt, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeShort(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(kits[i]);
+            out.writeLong(readyAt[i]);
+        }
+    }
+
+    public static KitCooldowns read(DataInput in) throws IOException {
+        int count = in.readUnsignedShort();
+        KitCooldowns cooldowns = new KitCooldowns(Math.max(2, count));
+        for (int i = 0; i < count; i++) {
+            cooldowns.kits[i] = in.readUTF().intern();
+            cooldowns.readyAt[i] = in.readLong();
+        }
+        cooldowns.size = count;
+        return cooldowns;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + size * 24);
+        write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    public static KitCooldowns fromBytes(byte[] bytes) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
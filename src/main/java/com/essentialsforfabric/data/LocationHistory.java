@@ -0,0 +1,138 @@
+package com.essentialsforfabric.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Bounded ring of a player's previous locations for /back, newest first.
+ */
+public class LocationHistory {
+    public static final byte TELEPORT = 0;
+    public static final byte DEATH = 1;
+
+    private String[] worlds;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private float[] yaw;
+    private float[] pitch;
+    private byte[] kinds;
+    // Index the next entry is written to
+    private int head;
+    private int size;
+
+    public LocationHistory(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.worlds = new String[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.yaw = new float[capacity];
+        this.pitch = new float[capacity];
+        this.kinds = new byte[capacity];
+    }
+
+    public void push(byte kind, String world, double x, double y, double z, float yaw, float pitch) {
+        this.worlds[head] = world;
+        this.x[head] = x;
+        this.y[head] = y;
+        this.z[head] = z;
+        this.yaw[head] = yaw;
+        this.pitch[head] = pitch;
+        this.kinds[head] = kind;
+        head = (head + 1) % capacity();
+        size = Math.min(size + 1, capacity());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return kinds.length;
+    }
+
+    /**
+     * @param index 0 for the most recent entry
+     */
+    public PlayerDataManager.LocationData get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        int slot = slot(index);
+        return new PlayerDataManager.LocationData(worlds[slot], x[slot], y[slot], z[slot], yaw[slot], pitch[slot]);
+    }
+
+    public byte getKind(int index) {
+        return kinds[slot(index)];
+    }
+
+    /**
+     * Position of the most recent entry of the given kind, or -1.
+     */
+    public int indexOf(byte kind) {
+        for (int i = 0; i < size; i++) {
+            if (kinds[slot(i)] == kind) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A copy holding up to {@code capacity} of the newest entries.
+     */
+    public LocationHistory copy(int capacity) {
+        LocationHistory copy = new LocationHistory(capacity);
+        for (int i = Math.min(size, copy.capacity()) - 1; i >= 0; i--) {
+            int slot = slot(i);
+            copy.push(kinds[slot], worlds[slot], x[slot], y[slot], z[slot], yaw[slot], pitch[slot]);
+        }
+        return copy;
+    }
+
+    private int slot(int index) {
+        return Math.floorMod(head - 1 - index, capacity());
+    }
+
+    /**
+     * Writes the entries oldest first, so reading them back and pushing in order restores the ring.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(size);
+        for (int i = size - 1; i >= 0; i--) {
+            int slot = slot(i);
+            out.writeByte(kinds[slot]);
+            out.writeUTF(worlds[slot]);
+            out.writeDouble(x[slot]);
+            out.writeDouble(y[slot]);
+            out.writeDouble(z[slot]);
+            out.writeFloat(yaw[slot]);
+            out.writeFloat(pitch[slot]);
+        }
+    }
+
+    public static LocationHistory read(DataInput in) throws IOException {
+        int count = in.readUnsignedByte();
+        LocationHistory history = new LocationHistory(count);
+        for (int i = 0; i < count; i++) {
+            history.push(in.readByte(), in.readUTF().intern(), in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat());
+        }
+        return history;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + size * 48);
+        write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    public static LocationHistory fromBytes(byte[] bytes) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.essentialsforfabric.data;
+
+import com.essentialsforfabric.metrics.LatencyHistogram;
+import com.essentialsforfabric.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Wraps the configured {@link StorageBackend} and times every load and write into the
+ * {@link Metrics} storage histograms, whichever thread it is called from.
+ */
+public class MeteredStorageBackend implements StorageBackend {
+    private final StorageBackend delegate;
+    private final LatencyHistogram loadPlayer = Metrics.storage("load_player");
+    private final LatencyHistogram savePlayer = Metrics.storage("save_player");
+    private final LatencyHistogram writePlayer = Metrics.storage("write_player");
+    private final LatencyHistogram writePlayers = Metrics.storage("write_players");
+    private final LatencyHistogram loadWarps = Metrics.storage("load_warps");
+    private final LatencyHistogram writeWarps = Metrics.storage("write_warps");
+
+    public MeteredStorageBackend(StorageBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData loadPlayer(UUID playerId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.loadPlayer(playerId);
+        } finally {
+            loadPlayer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void savePlayer(UUID playerId, PlayerDataManager.PlayerData data) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.savePlayer(playerId, data);
+        } finally {
+            savePlayer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writePlayer(UUID playerId, List<JournalRecord> records) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.writePlayer(playerId, records);
+        } finally {
+            writePlayer.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writePlayers(Map<UUID, List<JournalRecord>> batch) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.writePlayers(batch);
+        } finally {
+            writePlayers.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> loadWarps() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.loadWarps();
+        } finally {
+            loadWarps.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeWarps(List<JournalRecord> records) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.writeWarps(records);
+        } finally {
+            writeWarps.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        delegate.forEachPlayer(visitor);
+    }
+
+    @Override
+    public List<HomeEntry> findHomes(String world) throws IOException {
+        return delegate.findHomes(world);
+    }
+
+    @Override
+    public boolean hasHomeIndex() {
+        return delegate.hasHomeIndex();
+    }
+
+    @Override
+    public boolean supportsMigration() {
+        return delegate.supportsMigration();
+    }
+
+    @Override
+    public Set<UUID> listLegacyPlayers() throws IOException {
+        return delegate.listLegacyPlayers();
+    }
+
+    @Override
+    public void migratePlayer(UUID playerId) throws IOException {
+        delegate.migratePlayer(playerId);
+    }
+
+    @Override
+    public long getMigratedCount() {
+        return delegate.getMigratedCount();
+    }
+
+    @Override
+    public String describe() {
+        return delegate.describe();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.essentialsforfabric.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prefix tree over lower-case names for tab completion. Synchronized, since suggestions may be
+ * looked up off the server thread.
+ */
+public class NameTrie {
+    private final Node root = new Node();
+    private int size;
+
+    public NameTrie() {
+    }
+
+    public NameTrie(Collection<String> names) {
+        names.forEach(this::add);
+    }
+
+    public synchronized void add(String name) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.children.computeIfAbsent(name.charAt(i), c -> new Node());
+        }
+        if (node.name == null) {
+            node.name = name;
+            size++;
+        }
+    }
+
+    public synchronized void remove(String name) {
+        Deque<Node> path = new ArrayDeque<>(name.length() + 1);
+        Node node = root;
+        for (int i = 0; i < name.length() && node != null; i++) {
+            path.push(node);
+            node = node.children.get(name.charAt(i));
+        }
+        if (node == null || node.name == null) {
+            return;
+        }
+
+        node.name = null;
+        size--;
+
+        // Prune branches that no longer lead to any name
+        for (int i = name.length() - 1; i >= 0 && node.name == null && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(name.charAt(i));
+            node = parent;
+        }
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.name = null;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Up to {@code limit} names starting with {@code prefix}, in alphabetical order.
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node != null && limit > 0) {
+            collect(node, matches, limit);
+        }
+        return matches;
+    }
+
+    private static void collect(Node node, List<String> into, int limit) {
+        if (node.name != null) {
+            into.add(node.name);
+        }
+        for (Node child : node.children.values()) {
+            if (into.size() >= limit) {
+                return;
+            }
+            collect(child, into, limit);
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private String name;
+    }
+}
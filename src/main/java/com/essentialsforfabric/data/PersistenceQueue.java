@@ -0,0 +1,348 @@
+package com.essentialsforfabric.data;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for {@link PlayerDataManager}: records collected on the server thread
+ * are written in batches on a single I/O thread.
+ */
+public class PersistenceQueue {
+    private static final Map<UUID, List<JournalRecord>> pendingPlayerRecords = new LinkedHashMap<>();
+    private static final List<JournalRecord> pendingWarpRecords = new ArrayList<>();
+    private static final Map<UUID, Integer> inFlightPlayers = new ConcurrentHashMap<>();
+    private static int ticksSinceFlush;
+    private static ThreadPoolExecutor executor;
+
+    private static final AtomicLong mutations = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong writesSubmitted = new AtomicLong();
+    private static final AtomicLong writesCompleted = new AtomicLong();
+    private static final AtomicLong writesFailed = new AtomicLong();
+    private static final AtomicLong deferredFlushes = new AtomicLong();
+    private static final AtomicLong journalRecords = new AtomicLong();
+    private static final AtomicLong compactions = new AtomicLong();
+    private static final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    @FunctionalInterface
+    interface Compactor {
+        void compact(Path snapshotFile, Path journalFile) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface WriteTask {
+        void run() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ReadTask<T> {
+        T run() throws IOException;
+    }
+
+    public static void start() {
+        if (executor != null) {
+            return;
+        }
+
+        int capacity = Math.max(1, EssentialsConfig.get().ioQueueCapacity);
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), runnable -> {
+            Thread thread = new Thread(runnable, "Essentials-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void recordPlayer(UUID playerId, JournalRecord record) {
+        addCoalesced(pendingPlayerRecords.computeIfAbsent(playerId, k -> new ArrayList<>()), record);
+    }
+
+    public static void recordWarp(JournalRecord record) {
+        addCoalesced(pendingWarpRecords, record);
+    }
+
+    static void addCoalesced(List<JournalRecord> pending, JournalRecord record) {
+        mutations.incrementAndGet();
+        if (pending.removeIf(record::supersedes)) {
+            coalesced.incrementAndGet();
+        }
+        pending.add(record);
+    }
+
+    /**
+     * Whether the player has records that are queued or still being written, i.e. whether
+     * reading their files now could return stale data.
+     */
+    public static boolean isBusy(UUID playerId) {
+        return pendingPlayerRecords.containsKey(playerId) || inFlightPlayers.containsKey(playerId);
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (++ticksSinceFlush < Math.max(1, EssentialsConfig.get().flushIntervalTicks)) {
+            return;
+        }
+        ticksSinceFlush = 0;
+        flush(server);
+    }
+
+    public static void flush(MinecraftServer server) {
+        if (executor == null) {
+            return;
+        }
+
+        if (!pendingPlayerRecords.isEmpty()) {
+            // Every dirty player goes out in one batch so backends can commit them together
+            Map<UUID, List<JournalRecord>> batch = new LinkedHashMap<>(pendingPlayerRecords);
+            if (!submitPlayers(batch)) {
+                // Queue is full; everything stays pending for a later flush
+                return;
+            }
+            pendingPlayerRecords.clear();
+        }
+
+        if (!pendingWarpRecords.isEmpty()
+            && submitWarps(new ArrayList<>(pendingWarpRecords))) {
+            pendingWarpRecords.clear();
+        }
+
+        PlayerCatalog catalog = PlayerDataManager.getCatalog();
+        if (catalog != null) {
+            List<PlayerCatalog.Entry> entries = catalog.getPending();
+            if (!entries.isEmpty() && submit(() -> catalog.append(entries), Set.of())) {
+                catalog.clearPending();
+            }
+        }
+    }
+
+    public static void flushPlayer(MinecraftServer server, UUID playerId) {
+        List<JournalRecord> records = pendingPlayerRecords.get(playerId);
+        if (executor != null && records != null && submitPlayers(Map.of(playerId, records))) {
+            pendingPlayerRecords.remove(playerId);
+        }
+    }
+
+    public static void shutdown(MinecraftServer server) {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+
+        // Anything still pending is written synchronously so nothing is lost on stop
+        StorageBackend storage = PlayerDataManager.getStorage();
+        if (!pendingPlayerRecords.isEmpty()) {
+            Map<UUID, List<JournalRecord>> batch = new LinkedHashMap<>(pendingPlayerRecords);
+            runWrite(() -> storage.writePlayers(batch));
+            pendingPlayerRecords.clear();
+        }
+
+        if (!pendingWarpRecords.isEmpty()) {
+            List<JournalRecord> records = new ArrayList<>(pendingWarpRecords);
+            runWrite(() -> storage.writeWarps(records));
+            pendingWarpRecords.clear();
+        }
+
+        PlayerCatalog catalog = PlayerDataManager.getCatalog();
+        if (catalog != null && !catalog.getPending().isEmpty()) {
+            List<PlayerCatalog.Entry> entries = catalog.getPending();
+            runWrite(() -> catalog.append(entries));
+            catalog.clearPending();
+        }
+        ticksSinceFlush = 0;
+    }
+
+    /**
+     * Runs a storage read on the I/O thread behind every write submitted so far, so it sees them
+     * and never overlaps a journal append. Fails straight away if the queue is full.
+     */
+    public static <T> CompletableFuture<T> submitRead(ReadTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (executor == null) {
+            future.completeExceptionally(new IOException("Storage is not running"));
+            return future;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.run());
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("Storage queue is full, try again shortly"));
+        }
+        return future;
+    }
+
+    private static boolean submitPlayers(Map<UUID, List<JournalRecord>> batch) {
+        StorageBackend storage = PlayerDataManager.getStorage();
+        return submit(() -> storage.writePlayers(batch), batch.keySet());
+    }
+
+    private static boolean submitWarps(List<JournalRecord> records) {
+        StorageBackend storage = PlayerDataManager.getStorage();
+        return submit(() -> storage.writeWarps(records), Set.of());
+    }
+
+    private static boolean submit(WriteTask task, Set<UUID> playerIds) {
+        for (UUID playerId : playerIds) {
+            inFlightPlayers.merge(playerId, 1, Integer::sum);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    runWrite(task);
+                } finally {
+                    releaseInFlight(playerIds);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseInFlight(playerIds);
+            deferredFlushes.incrementAndGet();
+            return false;
+        }
+
+        writesSubmitted.incrementAndGet();
+        peakQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+        return true;
+    }
+
+    private static void releaseInFlight(Set<UUID> playerIds) {
+        for (UUID playerId : playerIds) {
+            inFlightPlayers.computeIfPresent(playerId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static void runWrite(WriteTask task) {
+        try {
+            task.run();
+            writesCompleted.incrementAndGet();
+        } catch (IOException e) {
+            writesFailed.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    static void appendJournal(Path snapshotFile, List<JournalRecord> records, Compactor compactor) throws IOException {
+        Path journalFile = Journal.journalFor(snapshotFile);
+        long journalSize = Journal.append(journalFile, records);
+        journalRecords.addAndGet(records.size());
+
+        if (journalSize >= EssentialsConfig.get().journalCompactionBytes) {
+            compactor.compact(snapshotFile, journalFile);
+            compactions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Replaces the file with the bytes so that after a crash it holds either the old or the new
+     * contents. Everything is on disk when this returns, so a journal folded into the file can be
+     * deleted afterwards.
+     */
+    static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getParent());
+    }
+
+    /**
+     * Makes a rename in the directory durable. Not every platform can open a directory for this,
+     * Windows among them, and there the rename is left to the file system.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    public static int getQueueDepth() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    public static int getQueueCapacity() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getQueue().size() + current.getQueue().remainingCapacity();
+    }
+
+    public static int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    public static int getDirtyCount() {
+        return pendingPlayerRecords.size() + (pendingWarpRecords.isEmpty() ? 0 : 1);
+    }
+
+    public static long getMutations() {
+        return mutations.get();
+    }
+
+    public static long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public static long getWritesSubmitted() {
+        return writesSubmitted.get();
+    }
+
+    public static long getWritesCompleted() {
+        return writesCompleted.get();
+    }
+
+    public static long getWritesFailed() {
+        return writesFailed.get();
+    }
+
+    public static long getDeferredFlushes() {
+        return deferredFlushes.get();
+    }
+
+    public static long getJournalRecords() {
+        return journalRecords.get();
+    }
+
+    public static long getCompactions() {
+        return compactions.get();
+    }
+}
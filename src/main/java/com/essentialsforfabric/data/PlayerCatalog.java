@@ -0,0 +1,156 @@
+package com.essentialsforfabric.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Every player seen so far by their last known name, with their home count, kept in memory and
+ * logged to disk in {@link Journal} framing.
+ */
+public class PlayerCatalog {
+    private static final int COMPACTION_RATIO = 4;
+    private static final int COMPACTION_SLACK = 1024;
+
+    private final Path file;
+    private final Map<UUID, Entry> byId = new HashMap<>();
+    private final Map<String, UUID> byName = new HashMap<>();
+    private final NameTrie names = new NameTrie();
+    private final Map<UUID, Entry> pending = new LinkedHashMap<>();
+    // Only touched by whoever writes the log: the I/O thread, or the server thread on load and shutdown
+    private long logEntries;
+    private long entriesAfterCompaction;
+
+    public record Entry(UUID playerId, String name, int homeCount) {
+    }
+
+    public PlayerCatalog(Path file) {
+        this.file = file;
+    }
+
+    public void load() throws IOException {
+        logEntries = Journal.replayFrames(file, PlayerCatalog::readEntry, this::index);
+        entriesAfterCompaction = byId.size();
+    }
+
+    public Entry get(UUID playerId) {
+        return byId.get(playerId);
+    }
+
+    public Entry find(String name) {
+        UUID playerId = byName.get(name.toLowerCase(Locale.ROOT));
+        return playerId != null ? byId.get(playerId) : null;
+    }
+
+    /**
+     * Lower-case names of every cataloged player, for tab completion.
+     */
+    public NameTrie getNames() {
+        return names;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Records the name a player joined with, keeping their home count.
+     */
+    public void updateName(UUID playerId, String name) {
+        Entry current = byId.get(playerId);
+        if (current == null || !current.name().equals(name)) {
+            update(new Entry(playerId, name, current != null ? current.homeCount() : 0));
+        }
+    }
+
+    /**
+     * Records how many homes a player has. Players not cataloged yet are added under {@code name},
+     * or skipped if no name is known.
+     */
+    public void updateHomeCount(UUID playerId, String name, int homeCount) {
+        Entry current = byId.get(playerId);
+        if (current != null && current.homeCount() == homeCount) {
+            return;
+        }
+        String knownName = current != null ? current.name() : name;
+        if (knownName != null) {
+            update(new Entry(playerId, knownName, homeCount));
+        }
+    }
+
+    private void update(Entry entry) {
+        index(entry);
+        pending.put(entry.playerId(), entry);
+    }
+
+    private void index(Entry entry) {
+        Entry previous = byId.put(entry.playerId(), entry);
+        if (previous != null && !previous.name().equalsIgnoreCase(entry.name())) {
+            String oldName = previous.name().toLowerCase(Locale.ROOT);
+            if (entry.playerId().equals(byName.get(oldName))) {
+                byName.remove(oldName);
+                names.remove(oldName);
+            }
+        }
+        // Names can be reused after a rename; the latest player to have one wins
+        String name = entry.name().toLowerCase(Locale.ROOT);
+        byName.put(name, entry.playerId());
+        names.add(name);
+    }
+
+    /**
+     * Entries changed since the last {@link #clearPending}, for writing with {@link #append}.
+     */
+    public List<Entry> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public void clearPending() {
+        pending.clear();
+    }
+
+    public void append(List<Entry> entries) throws IOException {
+        Journal.appendFrames(file, entries, PlayerCatalog::writeEntry);
+        logEntries += entries.size();
+        if (logEntries > COMPACTION_RATIO * entriesAfterCompaction + COMPACTION_SLACK) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        // Rebuilt from the log itself rather than the live maps, which belong to the server thread
+        Map<UUID, Entry> latest = new LinkedHashMap<>();
+        Journal.replayFrames(file, PlayerCatalog::readEntry, entry -> latest.put(entry.playerId(), entry));
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".compact");
+        Journal.delete(tempFile);
+        Journal.appendFrames(tempFile, new ArrayList<>(latest.values()), PlayerCatalog::writeEntry);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PersistenceQueue.syncDirectory(file.getParent());
+        Journal.forget(tempFile);
+        Journal.forget(file);
+        logEntries = latest.size();
+        entriesAfterCompaction = latest.size();
+    }
+
+    private static void writeEntry(Entry entry, DataOutputStream out) throws IOException {
+        out.writeLong(entry.playerId().getMostSignificantBits());
+        out.writeLong(entry.playerId().getLeastSignificantBits());
+        out.writeUTF(entry.name());
+        out.writeInt(entry.homeCount());
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        return new Entry(new UUID(in.readLong(), in.readLong()), in.readUTF(), in.readInt());
+    }
+}
@@ -0,0 +1,157 @@
+package com.essentialsforfabric.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Player data cache used by {@link PlayerDataManager}. Online players are pinned; offline entries
+ * live in a size-capped LRU.
+ */
+public class PlayerDataCache {
+    private final Map<UUID, PlayerDataManager.PlayerData> online = new HashMap<>();
+    private final LinkedHashMap<UUID, PlayerDataManager.PlayerData> offline = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Long> unloadDeadlines = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PlayerDataManager.PlayerData get(UUID playerId) {
+        PlayerDataManager.PlayerData data = peek(playerId);
+        if (data != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return data;
+    }
+
+    PlayerDataManager.PlayerData peek(UUID playerId) {
+        PlayerDataManager.PlayerData data = online.get(playerId);
+        return data != null ? data : offline.get(playerId);
+    }
+
+    public boolean contains(UUID playerId) {
+        return online.containsKey(playerId) || offline.containsKey(playerId);
+    }
+
+    public void putOnline(UUID playerId, PlayerDataManager.PlayerData data) {
+        offline.remove(playerId);
+        unloadDeadlines.remove(playerId);
+        online.put(playerId, data);
+    }
+
+    public void putOffline(UUID playerId, PlayerDataManager.PlayerData data, int maxOfflineEntries) {
+        if (online.containsKey(playerId)) {
+            return;
+        }
+        offline.put(playerId, data);
+        trim(maxOfflineEntries);
+    }
+
+    /**
+     * Pins an existing entry again, e.g. when a player reconnects within the grace period.
+     *
+     * @return whether the player was still cached
+     */
+    public boolean markOnline(UUID playerId) {
+        unloadDeadlines.remove(playerId);
+        if (online.containsKey(playerId)) {
+            return true;
+        }
+
+        PlayerDataManager.PlayerData data = offline.remove(playerId);
+        if (data == null) {
+            return false;
+        }
+        online.put(playerId, data);
+        return true;
+    }
+
+    public void scheduleUnload(UUID playerId, long deadlineTick) {
+        if (online.containsKey(playerId)) {
+            unloadDeadlines.put(playerId, deadlineTick);
+        }
+    }
+
+    /**
+     * Unloads disconnected players whose grace period has passed. Players that still have
+     * data queued or in flight are flushed and retried on a later call.
+     */
+    public void unloadExpired(long currentTick, Consumer<UUID> flusher) {
+        Iterator<Map.Entry<UUID, Long>> iterator = unloadDeadlines.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Long> entry = iterator.next();
+            if (entry.getValue() > currentTick) {
+                continue;
+            }
+
+            UUID playerId = entry.getKey();
+            if (PersistenceQueue.isBusy(playerId)) {
+                flusher.accept(playerId);
+                continue;
+            }
+
+            online.remove(playerId);
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public void trim(int maxOfflineEntries) {
+        if (offline.size() <= maxOfflineEntries) {
+            return;
+        }
+
+        Iterator<UUID> iterator = offline.keySet().iterator();
+        while (offline.size() > maxOfflineEntries && iterator.hasNext()) {
+            UUID playerId = iterator.next();
+            // Entries with unwritten changes stay until the queue has caught up
+            if (!PersistenceQueue.isBusy(playerId)) {
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void forEach(BiConsumer<UUID, PlayerDataManager.PlayerData> action) {
+        online.forEach(action);
+        offline.forEach(action);
+    }
+
+    public void clear() {
+        online.clear();
+        offline.clear();
+        unloadDeadlines.clear();
+    }
+
+    public int getOnlineCount() {
+        return online.size();
+    }
+
+    public int getOfflineCount() {
+        return offline.size();
+    }
+
+    public int getPendingUnloadCount() {
+        return unloadDeadlines.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,33 @@
+package com.essentialsforfabric.data;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * On-disk encoding of player and warp snapshots. The active codec is picked with the
+ * {@code storageFormat} config option; files written by the other codec are migrated on first read.
+ */
+public interface PlayerDataCodec {
+    PlayerDataCodec JSON = new JsonPlayerDataCodec();
+    PlayerDataCodec BINARY = new BinaryPlayerDataCodec();
+
+    String extension();
+
+    byte[] encodePlayerData(PlayerDataManager.PlayerData data) throws IOException;
+
+    PlayerDataManager.PlayerData decodePlayerData(byte[] bytes) throws IOException;
+
+    byte[] encodeWarps(Map<String, PlayerDataManager.WarpData> warps) throws IOException;
+
+    Map<String, PlayerDataManager.WarpData> decodeWarps(byte[] bytes) throws IOException;
+
+    static PlayerDataCodec active() {
+        return "json".equalsIgnoreCase(EssentialsConfig.get().storageFormat) ? JSON : BINARY;
+    }
+
+    static PlayerDataCodec inactive() {
+        return active() == JSON ? BINARY : JSON;
+    }
+}
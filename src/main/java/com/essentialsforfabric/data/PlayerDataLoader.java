@@ -0,0 +1,115 @@
+package com.essentialsforfabric.data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads player data on the persistence I/O thread. Loads are started while the player is still
+ * logging in, so by the time they join the data is usually already waiting to be installed.
+ */
+public class PlayerDataLoader {
+    private static final Map<UUID, CompletableFuture<PlayerDataManager.PlayerData>> pendingLoads = new ConcurrentHashMap<>();
+    private static final Map<UUID, Long> loadTimesNanos = new ConcurrentHashMap<>();
+
+    private static final AtomicLong loads = new AtomicLong();
+    private static final AtomicLong totalLoadNanos = new AtomicLong();
+    private static final AtomicLong maxLoadNanos = new AtomicLong();
+
+    public static void shutdown() {
+        pendingLoads.clear();
+        loadTimesNanos.clear();
+    }
+
+    /**
+     * Starts loading a player's data in the background unless it is already loading. The read is
+     * queued behind the writes submitted so far, so it never races an append or a compaction.
+     */
+    public static CompletableFuture<PlayerDataManager.PlayerData> prefetch(UUID playerId) {
+        CompletableFuture<PlayerDataManager.PlayerData> pending = pendingLoads.get(playerId);
+        if (pending != null) {
+            return pending;
+        }
+
+        CompletableFuture<PlayerDataManager.PlayerData> future = new CompletableFuture<>();
+        pending = pendingLoads.putIfAbsent(playerId, future);
+        if (pending != null) {
+            return pending;
+        }
+
+        StorageBackend storage = PlayerDataManager.getStorage();
+        PersistenceQueue.submitRead(() -> {
+            long start = System.nanoTime();
+            try {
+                return storage.loadPlayer(playerId);
+            } finally {
+                recordLoadTime(playerId, System.nanoTime() - start);
+            }
+        }).whenComplete((data, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(data);
+            }
+        });
+        return future;
+    }
+
+    public static boolean isLoading(UUID playerId) {
+        CompletableFuture<PlayerDataManager.PlayerData> pending = pendingLoads.get(playerId);
+        return pending != null && !pending.isDone();
+    }
+
+    static CompletableFuture<PlayerDataManager.PlayerData> getPending(UUID playerId) {
+        return pendingLoads.get(playerId);
+    }
+
+    static void complete(UUID playerId) {
+        // Leaves a newer load started after this one finished alone
+        pendingLoads.computeIfPresent(playerId, (id, future) -> future.isDone() ? null : future);
+    }
+
+    public static void forget(UUID playerId) {
+        loadTimesNanos.remove(playerId);
+    }
+
+    private static void recordLoadTime(UUID playerId, long nanos) {
+        loads.incrementAndGet();
+        totalLoadNanos.addAndGet(nanos);
+        maxLoadNanos.accumulateAndGet(nanos, Math::max);
+        loadTimesNanos.put(playerId, nanos);
+    }
+
+    public static Long getLoadTimeNanos(UUID playerId) {
+        return loadTimesNanos.get(playerId);
+    }
+
+    public static List<Map.Entry<UUID, Long>> getSlowestLoads(int limit) {
+        return loadTimesNanos.entrySet().stream()
+            .sorted(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()))
+            .limit(limit)
+            .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+
+    public static int getPendingCount() {
+        return (int) pendingLoads.values().stream().filter(future -> !future.isDone()).count();
+    }
+
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    public static long getAverageLoadNanos() {
+        long count = loads.get();
+        return count == 0 ? 0 : totalLoadNanos.get() / count;
+    }
+
+    public static long getMaxLoadNanos() {
+        return maxLoadNanos.get();
+    }
+}
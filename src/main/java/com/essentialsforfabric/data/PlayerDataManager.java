@@ -1,29 +1,42 @@
 package com.essentialsforfabric.data;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.essentialsforfabric.config.EssentialsConfig;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.WorldSavePath;
 
-import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class PlayerDataManager {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final Map<UUID, PlayerData> playerDataCache = new HashMap<>();
+    private static final PlayerDataCache playerDataCache = new PlayerDataCache();
     private static final Map<String, WarpData> warps = new HashMap<>();
+    private static final WarpIndex warpIndex = new WarpIndex();
+    private static final NameTrie warpNames = new NameTrie();
+    private static int warpsVersion;
+    private static final int CACHE_MAINTENANCE_INTERVAL_TICKS = 20;
+    private static MinecraftServer server;
+    private static StorageBackend storage;
+    private static PlayerCatalog catalog;
 
     public static class PlayerData {
         public Map<String, LocationData> homes = new HashMap<>();
+        // Only read from older files; superseded by backHistory
         public LocationData lastLocation;
+        public LocationHistory backHistory;
+        // Set when backHistory changed since it was last queued for saving; never saved
+        public transient boolean backHistoryDirty;
+        public KitCooldowns kitCooldowns;
+        // Bumped whenever homes change so cached listings know to re-render; never saved
+        public transient int homesVersion;
+        // Built the first time home names are completed, then kept in step with homes
+        public transient NameTrie homeNames;
 
         public PlayerData() {
             this.homes = new HashMap<>();
@@ -51,49 +64,315 @@ public class PlayerDataManager {
         }
     }
 
+    public static void start(MinecraftServer minecraftServer) {
+        server = minecraftServer;
+
+        Path essentialsDir = minecraftServer.getSavePath(WorldSavePath.ROOT).resolve("essentials");
+        FileStorageBackend fileStorage = new FileStorageBackend(essentialsDir);
+        switch (EssentialsConfig.get().storageBackend.toLowerCase(Locale.ROOT)) {
+            case "region" -> storage = new RegionStorageBackend(essentialsDir.resolve("playerregions"), fileStorage);
+            case "sql" -> {
+                try {
+                    storage = new SqlStorageBackend(essentialsDir.resolve("essentials"), fileStorage);
+                } catch (IOException e) {
+                    // Falling back to files here would silently fork the data, so refuse to start instead
+                    throw new IllegalStateException("Could not open the essentials database", e);
+                }
+            }
+            default -> storage = fileStorage;
+        }
+        storage = new MeteredStorageBackend(storage);
+
+        catalog = new PlayerCatalog(essentialsDir.resolve("players.catalog"));
+        try {
+            catalog.load();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static StorageBackend getStorage() {
+        return storage;
+    }
+
+    public static PlayerCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Looks up any player who has joined since the catalog was created, online or not, by their
+     * last known name.
+     */
+    public static PlayerCatalog.Entry findPlayer(String name) {
+        return catalog != null ? catalog.find(name) : null;
+    }
+
+    public static void onJoin(ServerPlayerEntity player) {
+        if (catalog != null) {
+            catalog.updateName(player.getUuid(), player.getGameProfile().getName());
+        }
+        loadPlayerData(player.getServer(), player.getUuid());
+    }
+
+    /**
+     * The player's cached data, or {@code null} if it isn't loaded yet, in which case loading it
+     * is started in the background. Storage is never touched on the calling thread.
+     */
     public static PlayerData getPlayerData(UUID playerId) {
-        return playerDataCache.computeIfAbsent(playerId, k -> new PlayerData());
+        PlayerData data = playerDataCache.get(playerId);
+        if (data == null) {
+            loadPlayerDataAsync(playerId);
+        }
+        return data;
+    }
+
+    /**
+     * Whether the player's data still has to be loaded before it can be used. Starts the load if
+     * nothing is loading it yet, so callers can just ask the player to try again in a moment.
+     */
+    public static boolean isLoading(UUID playerId) {
+        return getPlayerData(playerId) == null;
+    }
+
+    /**
+     * Gets a player's data without waiting on storage on the server thread. The future completes
+     * on the server thread, straight away if the data is cached, and with {@code null} if loading
+     * failed.
+     */
+    public static CompletableFuture<PlayerData> loadPlayerDataAsync(UUID playerId) {
+        PlayerData data = playerDataCache.get(playerId);
+        if (data != null) {
+            return CompletableFuture.completedFuture(data);
+        }
+
+        return PlayerDataLoader.prefetch(playerId).handleAsync((loaded, error) -> {
+            installLoadedData(playerId, loaded, error);
+            return playerDataCache.peek(playerId);
+        }, server);
+    }
+
+    public static PlayerDataCache getCache() {
+        return playerDataCache;
     }
 
-    public static void setHome(ServerPlayerEntity player, String homeName) {
+    /**
+     * @return false if the player's data isn't loaded yet
+     */
+    public static boolean setHome(ServerPlayerEntity player, String homeName) {
         PlayerData data = getPlayerData(player.getUuid());
+        if (data == null) {
+            return false;
+        }
         LocationData location = new LocationData(
             player.getWorld().getRegistryKey().getValue().toString(),
             player.getX(), player.getY(), player.getZ(),
             player.getYaw(), player.getPitch()
         );
         data.homes.put(homeName.toLowerCase(), location);
-        savePlayerData(player.getServer(), player.getUuid());
+        data.homesVersion++;
+        if (data.homeNames != null) {
+            data.homeNames.add(homeName.toLowerCase());
+        }
+        PersistenceQueue.recordPlayer(player.getUuid(), JournalRecord.setHome(homeName.toLowerCase(), location));
+        updateHomeCount(player.getUuid(), player.getGameProfile().getName(), data);
+        return true;
+    }
+
+    public static boolean deleteHome(UUID playerId, String homeName) {
+        PlayerData data = getPlayerData(playerId);
+        if (data == null || data.homes.remove(homeName.toLowerCase()) == null) {
+            return false;
+        }
+        data.homesVersion++;
+        if (data.homeNames != null) {
+            data.homeNames.remove(homeName.toLowerCase());
+        }
+        PersistenceQueue.recordPlayer(playerId, JournalRecord.deleteHome(homeName.toLowerCase()));
+        updateHomeCount(playerId, null, data);
+        return true;
+    }
+
+    private static void updateHomeCount(UUID playerId, String name, PlayerData data) {
+        if (catalog != null) {
+            catalog.updateHomeCount(playerId, name, data.homes.size());
+        }
     }
 
     public static LocationData getHome(UUID playerId, String homeName) {
         PlayerData data = getPlayerData(playerId);
-        return data.homes.get(homeName.toLowerCase());
+        return data != null ? data.homes.get(homeName.toLowerCase()) : null;
     }
 
+    /**
+     * Remembers where the player is standing before a teleport, for /back.
+     */
     public static void setLastLocation(ServerPlayerEntity player) {
+        pushBackLocation(player, LocationHistory.TELEPORT);
+    }
+
+    public static void recordDeath(ServerPlayerEntity player) {
+        pushBackLocation(player, LocationHistory.DEATH);
+    }
+
+    private static void pushBackLocation(ServerPlayerEntity player, byte kind) {
         PlayerData data = getPlayerData(player.getUuid());
-        data.lastLocation = new LocationData(
-            player.getWorld().getRegistryKey().getValue().toString(),
-            player.getX(), player.getY(), player.getZ(),
-            player.getYaw(), player.getPitch()
-        );
-        savePlayerData(player.getServer(), player.getUuid());
+        if (data == null) {
+            // Only happens right after joining; the location is dropped rather than waiting on storage
+            return;
+        }
+        getBackHistory(data).push(kind, player.getWorld().getRegistryKey().getValue().toString(),
+            player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
+        // Saved when the player leaves or the server stops rather than on every teleport
+        data.backHistoryDirty = true;
     }
 
-    public static LocationData getLastLocation(UUID playerId) {
+    /**
+     * @return the player's /back history, or {@code null} if their data isn't loaded yet
+     */
+    public static LocationHistory getBackHistory(UUID playerId) {
         PlayerData data = getPlayerData(playerId);
-        return data.lastLocation;
+        return data != null ? getBackHistory(data) : null;
+    }
+
+    private static LocationHistory getBackHistory(PlayerData data) {
+        int capacity = Math.max(1, Math.min(255, EssentialsConfig.get().backHistorySize));
+        if (data.backHistory == null) {
+            data.backHistory = new LocationHistory(capacity);
+            if (data.lastLocation != null) {
+                LocationData last = data.lastLocation;
+                data.backHistory.push(LocationHistory.TELEPORT, last.world, last.x, last.y, last.z, last.yaw, last.pitch);
+            }
+        } else if (data.backHistory.capacity() != capacity) {
+            data.backHistory = data.backHistory.copy(capacity);
+        }
+        return data.backHistory;
+    }
+
+    /**
+     * Queues the player's /back history for saving if it changed.
+     */
+    public static void saveBackHistory(UUID playerId) {
+        PlayerData data = playerDataCache.peek(playerId);
+        if (data != null) {
+            saveBackHistory(playerId, data);
+        }
+    }
+
+    public static void saveAllBackHistories() {
+        playerDataCache.forEach(PlayerDataManager::saveBackHistory);
+    }
+
+    private static void saveBackHistory(UUID playerId, PlayerData data) {
+        if (data.backHistoryDirty && data.backHistory != null) {
+            data.backHistoryDirty = false;
+            // The I/O thread gets its own copy since the live one keeps changing
+            PersistenceQueue.recordPlayer(playerId, JournalRecord.setBackHistory(data.backHistory.copy(data.backHistory.capacity())));
+        }
+    }
+
+    /**
+     * When the player may next claim each kit, or {@code null} if their data isn't loaded yet.
+     * Must be called on the server thread.
+     */
+    public static KitCooldowns getKitCooldowns(UUID playerId) {
+        PlayerData data = getPlayerData(playerId);
+        if (data == null) {
+            return null;
+        }
+        if (data.kitCooldowns == null) {
+            data.kitCooldowns = new KitCooldowns();
+        }
+        return data.kitCooldowns;
+    }
+
+    /**
+     * @return false if the player's data isn't loaded yet
+     */
+    public static boolean setKitCooldown(UUID playerId, String kit, long readyAtMillis) {
+        KitCooldowns cooldowns = getKitCooldowns(playerId);
+        if (cooldowns == null) {
+            return false;
+        }
+        cooldowns.set(kit, readyAtMillis, System.currentTimeMillis());
+        // Queued straight away so a crash can't hand the kit out twice; the I/O thread gets its own copy
+        PersistenceQueue.recordPlayer(playerId, JournalRecord.setKitCooldowns(cooldowns.copy()));
+        return true;
+    }
+
+    /**
+     * Adds homes and a /back location brought over from another plugin. Homes that already exist
+     * are kept, and the location is only used if the player has no /back history yet.
+     *
+     * @param name the player's last known name for the catalog, or {@code null}
+     * @param stored the player's data as last loaded from storage, used when they are not cached
+     * @return how many homes were added
+     */
+    public static int importPlayer(UUID playerId, String name, PlayerData stored, Map<String, LocationData> homes, LocationData lastLocation) {
+        PlayerData cached = playerDataCache.peek(playerId);
+        PlayerData current = cached != null ? cached : stored != null ? stored : new PlayerData();
+
+        int added = 0;
+        for (Map.Entry<String, LocationData> home : homes.entrySet()) {
+            String homeName = home.getKey().toLowerCase();
+            if (current.homes.containsKey(homeName)) {
+                continue;
+            }
+            if (cached != null) {
+                cached.homes.put(homeName, home.getValue());
+                cached.homesVersion++;
+                if (cached.homeNames != null) {
+                    cached.homeNames.add(homeName);
+                }
+            }
+            PersistenceQueue.recordPlayer(playerId, JournalRecord.setHome(homeName, home.getValue()));
+            added++;
+        }
+
+        if (lastLocation != null && current.backHistory == null && current.lastLocation == null) {
+            if (cached != null) {
+                cached.lastLocation = lastLocation;
+            }
+            PersistenceQueue.recordPlayer(playerId, JournalRecord.setLastLocation(lastLocation));
+        }
+
+        if (catalog != null) {
+            int homeCount = current.homes.size() + (cached != null ? 0 : added);
+            if (name != null) {
+                catalog.updateName(playerId, name);
+            }
+            catalog.updateHomeCount(playerId, name, homeCount);
+        }
+        return added;
     }
 
     public static void setWarp(String name, ServerPlayerEntity player) {
-        WarpData warp = new WarpData(
+        putWarp(name, new WarpData(
             player.getWorld().getRegistryKey().getValue().toString(),
             player.getX(), player.getY(), player.getZ(),
             player.getYaw(), player.getPitch()
-        );
-        warps.put(name.toLowerCase(), warp);
-        saveWarps(player.getServer());
+        ));
+    }
+
+    /**
+     * Adds a warp brought over from another plugin unless one with that name already exists.
+     */
+    public static boolean importWarp(String name, WarpData warp) {
+        if (warps.containsKey(name.toLowerCase())) {
+            return false;
+        }
+        putWarp(name, warp);
+        return true;
+    }
+
+    private static void putWarp(String name, WarpData warp) {
+        WarpData previous = warps.put(name.toLowerCase(), warp);
+        if (previous != null) {
+            warpIndex.remove(name.toLowerCase(), previous);
+        }
+        warpIndex.add(name.toLowerCase(), warp);
+        warpNames.add(name.toLowerCase());
+        warpsVersion++;
+        PersistenceQueue.recordWarp(JournalRecord.setWarp(name.toLowerCase(), warp));
     }
 
     public static WarpData getWarp(String name) {
@@ -104,73 +383,136 @@ public class PlayerDataManager {
         return new HashMap<>(warps);
     }
 
-    public static void deleteWarp(String name) {
-        warps.remove(name.toLowerCase());
+    /**
+     * Trie over all warp names, safe to query from any thread.
+     */
+    public static NameTrie getWarpNames() {
+        return warpNames;
     }
 
-    private static void savePlayerData(MinecraftServer server, UUID playerId) {
-        try {
-            Path dataDir = server.getSavePath(WorldSavePath.ROOT).resolve("essentials").resolve("playerdata");
-            Files.createDirectories(dataDir);
+    /**
+     * Trie over a player's home names, built on first use, or {@code null} if their data isn't
+     * loaded yet. Must be called on the server thread; the returned trie itself can be queried
+     * from any thread.
+     */
+    public static NameTrie getHomeNames(UUID playerId) {
+        PlayerData data = getPlayerData(playerId);
+        if (data == null) {
+            return null;
+        }
+        if (data.homeNames == null) {
+            data.homeNames = new NameTrie(data.homes.keySet());
+        }
+        return data.homeNames;
+    }
 
-            Path playerFile = dataDir.resolve(playerId + ".json");
-            PlayerData data = playerDataCache.get(playerId);
+    /**
+     * Changes every time a warp is added, moved or removed.
+     */
+    public static int getWarpsVersion() {
+        return warpsVersion;
+    }
 
-            try (FileWriter writer = new FileWriter(playerFile.toFile())) {
-                GSON.toJson(data, writer);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    public static List<WarpIndex.Match> getNearestWarps(String world, double x, double y, double z, int limit) {
+        return warpIndex.nearest(world, x, y, z, limit);
+    }
+
+    public static List<WarpIndex.Match> getWarpsWithin(String world, double x, double y, double z, double radius, int limit) {
+        return warpIndex.within(world, x, y, z, radius, limit);
+    }
+
+    public static void deleteWarp(String name) {
+        WarpData removed = warps.remove(name.toLowerCase());
+        if (removed != null) {
+            warpIndex.remove(name.toLowerCase(), removed);
+            warpNames.remove(name.toLowerCase());
+            warpsVersion++;
+            PersistenceQueue.recordWarp(JournalRecord.deleteWarp(name.toLowerCase()));
         }
     }
 
-    private static void saveWarps(MinecraftServer server) {
-        try {
-            Path dataDir = server.getSavePath(WorldSavePath.ROOT).resolve("essentials");
-            Files.createDirectories(dataDir);
+    public static void onDisconnect(MinecraftServer server, UUID playerId) {
+        PlayerDataLoader.forget(playerId);
+        saveBackHistory(playerId);
+        playerDataCache.scheduleUnload(playerId, server.getTicks() + EssentialsConfig.get().unloadGraceTicks);
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (server.getTicks() % CACHE_MAINTENANCE_INTERVAL_TICKS != 0) {
+            return;
+        }
+        playerDataCache.unloadExpired(server.getTicks(), playerId -> PersistenceQueue.flushPlayer(server, playerId));
+        playerDataCache.trim(EssentialsConfig.get().offlineCacheSize);
+    }
 
-            Path warpsFile = dataDir.resolve("warps.json");
+    public static void clear() {
+        playerDataCache.clear();
+        warps.clear();
+        warpIndex.clear();
+        warpNames.clear();
+        warpsVersion++;
+        server = null;
+        catalog = null;
 
-            try (FileWriter writer = new FileWriter(warpsFile.toFile())) {
-                GSON.toJson(warps, writer);
+        if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            storage = null;
         }
     }
 
     public static void loadPlayerData(MinecraftServer server, UUID playerId) {
-        try {
-            Path playerFile = server.getSavePath(WorldSavePath.ROOT).resolve("essentials").resolve("playerdata").resolve(playerId + ".json");
-
-            if (Files.exists(playerFile)) {
-                try (FileReader reader = new FileReader(playerFile.toFile())) {
-                    PlayerData data = GSON.fromJson(reader, PlayerData.class);
-                    if (data != null) {
-                        playerDataCache.put(playerId, data);
-                    }
-                }
+        if (playerDataCache.markOnline(playerId)) {
+            // The cached copy may be newer than what the write-behind queue has flushed so far
+            return;
+        }
+
+        PlayerDataLoader.prefetch(playerId).whenCompleteAsync((data, error) -> installLoadedData(playerId, data, error), server);
+    }
+
+    public static void prefetchPlayerData(UUID playerId) {
+        if (!playerDataCache.contains(playerId)) {
+            PlayerDataLoader.prefetch(playerId);
+        }
+    }
+
+    private static void installLoadedData(UUID playerId, PlayerData data, Throwable error) {
+        PlayerDataLoader.complete(playerId);
+        if (error != null) {
+            // Nothing is installed, so the next access starts a fresh load instead of using empty data
+            error.printStackTrace();
+            return;
+        }
+
+        boolean online = server != null && server.getPlayerManager().getPlayer(playerId) != null;
+        if (playerDataCache.contains(playerId)) {
+            if (online) {
+                playerDataCache.markOnline(playerId);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            return;
         }
+
+        PlayerData installed = data != null ? data : new PlayerData();
+        if (online) {
+            playerDataCache.putOnline(playerId, installed);
+        } else {
+            playerDataCache.putOffline(playerId, installed, EssentialsConfig.get().offlineCacheSize);
+        }
+        // Catches up players whose homes predate the catalog
+        updateHomeCount(playerId, null, installed);
     }
 
     public static void loadWarps(MinecraftServer server) {
         try {
-            Path warpsFile = server.getSavePath(WorldSavePath.ROOT).resolve("essentials").resolve("warps.json");
-
-            if (Files.exists(warpsFile)) {
-                try (FileReader reader = new FileReader(warpsFile.toFile())) {
-                    Type type = new TypeToken<Map<String, WarpData>>(){}.getType();
-                    Map<String, WarpData> loadedWarps = GSON.fromJson(reader, type);
-                    if (loadedWarps != null) {
-                        warps.putAll(loadedWarps);
-                    }
-                }
-            }
+            warps.putAll(storage.loadWarps());
+            warps.forEach(warpIndex::add);
+            warps.keySet().forEach(warpNames::add);
+            warpsVersion++;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,257 @@
+package com.essentialsforfabric.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Packs many player snapshots into 4 KiB sectors behind an open-addressed slot table, like Anvil
+ * region files.
+ */
+public class RegionFile implements Closeable {
+    public static final int SECTOR_SIZE = 4096;
+    static final int SLOT_COUNT = 4096;
+    private static final int SLOT_SIZE = 32;
+    private static final int HEADER_SECTORS = 1 + SLOT_COUNT * SLOT_SIZE / SECTOR_SIZE;
+    private static final int MAGIC = 0x45464652;
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final long[] mostSignificant = new long[SLOT_COUNT];
+    private final long[] leastSignificant = new long[SLOT_COUNT];
+    private final int[] sectorOffsets = new int[SLOT_COUNT];
+    private final int[] sectorCounts = new int[SLOT_COUNT];
+    private final int[] lengths = new int[SLOT_COUNT];
+    private final BitSet usedSectors = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile MappedByteBuffer view;
+    private int entryCount;
+
+    public RegionFile(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        usedSectors.set(0, HEADER_SECTORS);
+
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(SLOT_COUNT).flip();
+            writeFully(header, 0);
+            channel.force(true);
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading until the header is complete
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SECTORS * SECTOR_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Corrupt region file header: " + file);
+        }
+        int version = header.getInt();
+        int slotCount = header.getInt();
+        if (version != VERSION || slotCount != SLOT_COUNT) {
+            throw new IOException("Unsupported region file " + file + " (version " + version + ", " + slotCount + " slots)");
+        }
+
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            header.position(SECTOR_SIZE + slot * SLOT_SIZE);
+            long msb = header.getLong();
+            long lsb = header.getLong();
+            int offset = header.getInt();
+            int count = header.getInt();
+            int length = header.getInt();
+            if (offset == 0) {
+                continue;
+            }
+            mostSignificant[slot] = msb;
+            leastSignificant[slot] = lsb;
+            sectorOffsets[slot] = offset;
+            sectorCounts[slot] = count;
+            lengths[slot] = length;
+            usedSectors.set(offset, offset + count);
+            entryCount++;
+        }
+    }
+
+    public byte[] read(UUID playerId) throws IOException {
+        lock.readLock().lock();
+        try {
+            int slot = find(playerId);
+            if (slot < 0) {
+                return null;
+            }
+
+            long start = (long) sectorOffsets[slot] * SECTOR_SIZE;
+            ByteBuffer buffer = mapped(start + lengths[slot]).duplicate();
+            buffer.position((int) start).limit((int) start + lengths[slot]);
+            byte[] bytes = new byte[lengths[slot]];
+            buffer.get(bytes);
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(UUID playerId) {
+        lock.readLock().lock();
+        try {
+            return find(playerId) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void write(UUID playerId, byte[] bytes) throws IOException {
+        int sectorsNeeded = Math.max(1, (bytes.length + SECTOR_SIZE - 1) / SECTOR_SIZE);
+        ByteBuffer payload = ByteBuffer.allocate(sectorsNeeded * SECTOR_SIZE);
+        payload.put(bytes).position(0);
+
+        lock.writeLock().lock();
+        try {
+            // Never overwrite live sectors: the old record stays valid until the slot points elsewhere.
+            int slot = find(playerId);
+            if (slot < 0) {
+                slot = freeSlot(playerId);
+            }
+
+            int offset = allocate(sectorsNeeded);
+            writeFully(payload, (long) offset * SECTOR_SIZE);
+            channel.force(false);
+
+            int oldOffset = sectorOffsets[slot];
+            int oldCount = sectorCounts[slot];
+            if (oldOffset == 0) {
+                entryCount++;
+            }
+            mostSignificant[slot] = playerId.getMostSignificantBits();
+            leastSignificant[slot] = playerId.getLeastSignificantBits();
+            sectorOffsets[slot] = offset;
+            sectorCounts[slot] = sectorsNeeded;
+            lengths[slot] = bytes.length;
+            writeSlot(slot);
+
+            if (oldOffset != 0) {
+                usedSectors.clear(oldOffset, oldOffset + oldCount);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void forEach(BiConsumer<UUID, byte[]> consumer) throws IOException {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                if (sectorOffsets[slot] != 0) {
+                    UUID playerId = new UUID(mostSignificant[slot], leastSignificant[slot]);
+                    consumer.accept(playerId, read(playerId));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            view = null;
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int find(UUID playerId) {
+        long msb = playerId.getMostSignificantBits();
+        long lsb = playerId.getLeastSignificantBits();
+        int start = slotFor(playerId);
+        for (int probe = 0; probe < SLOT_COUNT; probe++) {
+            int slot = (start + probe) & (SLOT_COUNT - 1);
+            if (sectorOffsets[slot] == 0) {
+                return -1;
+            }
+            if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int freeSlot(UUID playerId) throws IOException {
+        int start = slotFor(playerId);
+        for (int probe = 0; probe < SLOT_COUNT; probe++) {
+            int slot = (start + probe) & (SLOT_COUNT - 1);
+            if (sectorOffsets[slot] == 0) {
+                return slot;
+            }
+        }
+        throw new IOException("Region file is full");
+    }
+
+    private static int slotFor(UUID playerId) {
+        long hash = playerId.getMostSignificantBits() * 31 + playerId.getLeastSignificantBits();
+        return (int) (hash ^ (hash >>> 32)) & (SLOT_COUNT - 1);
+    }
+
+    private int allocate(int sectors) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            int nextUsed = usedSectors.nextSetBit(start);
+            if (nextUsed < 0 || nextUsed - start >= sectors) {
+                usedSectors.set(start, start + sectors);
+                return start;
+            }
+            start = usedSectors.nextClearBit(nextUsed);
+        }
+    }
+
+    private void writeSlot(int slot) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(SLOT_SIZE);
+        entry.putLong(mostSignificant[slot])
+            .putLong(leastSignificant[slot])
+            .putInt(sectorOffsets[slot])
+            .putInt(sectorCounts[slot])
+            .putInt(lengths[slot])
+            .flip();
+        writeFully(entry, SECTOR_SIZE + (long) slot * SLOT_SIZE);
+        channel.force(false);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private MappedByteBuffer mapped(long requiredSize) throws IOException {
+        MappedByteBuffer current = view;
+        if (current != null && current.capacity() >= requiredSize) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = view;
+            if (current == null || current.capacity() < requiredSize) {
+                current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                view = current;
+            }
+            return current;
+        }
+    }
+}
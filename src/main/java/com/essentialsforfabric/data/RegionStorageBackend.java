@@ -0,0 +1,163 @@
+package com.essentialsforfabric.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Packs player snapshots into {@code SHARD_COUNT} region files in
+ * {@code essentials/playerregions}. Players in the per-file layout are read from there until moved.
+ */
+public class RegionStorageBackend implements StorageBackend {
+    private static final int SHARD_COUNT = 256;
+
+    private final Path directory;
+    private final FileStorageBackend legacyStore;
+    private final Map<Integer, RegionFile> regions = new ConcurrentHashMap<>();
+    private final AtomicLong migrated = new AtomicLong();
+
+    public RegionStorageBackend(Path directory, FileStorageBackend legacyStore) {
+        this.directory = directory;
+        this.legacyStore = legacyStore;
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData loadPlayer(UUID playerId) throws IOException {
+        RegionFile region = region(playerId);
+        byte[] bytes = region.read(playerId);
+        if (bytes != null) {
+            return PlayerDataCodec.BINARY.decodePlayerData(bytes);
+        }
+        return legacyStore.loadPlayer(playerId);
+    }
+
+    @Override
+    public void savePlayer(UUID playerId, PlayerDataManager.PlayerData data) throws IOException {
+        region(playerId).write(playerId, PlayerDataCodec.BINARY.encodePlayerData(data));
+    }
+
+    @Override
+    public void writePlayer(UUID playerId, List<JournalRecord> records) throws IOException {
+        migratePlayer(playerId);
+        PlayerDataManager.PlayerData data = loadPlayer(playerId);
+        if (data == null) {
+            data = new PlayerDataManager.PlayerData();
+        }
+        for (JournalRecord record : records) {
+            record.applyTo(data);
+        }
+        savePlayer(playerId, data);
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> loadWarps() throws IOException {
+        return legacyStore.loadWarps();
+    }
+
+    @Override
+    public void writeWarps(List<JournalRecord> records) throws IOException {
+        legacyStore.writeWarps(records);
+    }
+
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            if (!regions.containsKey(shard) && !Files.exists(regionFile(shard))) {
+                continue;
+            }
+
+            try {
+                region(shard).forEach((playerId, bytes) -> {
+                    try {
+                        visitor.visit(playerId, PlayerDataCodec.BINARY.decodePlayerData(bytes));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Players that haven't been moved over yet
+        legacyStore.forEachPlayer(visitor);
+    }
+
+    @Override
+    public String describe() {
+        return "region (" + regions.size() + " region files open)";
+    }
+
+    @Override
+    public void migratePlayer(UUID playerId) throws IOException {
+        if (!legacyStore.exists(playerId)) {
+            return;
+        }
+        // Old files next to a region entry are leftovers and only get deleted
+        RegionFile region = region(playerId);
+        if (region.read(playerId) == null) {
+            PlayerDataManager.PlayerData data = legacyStore.loadPlayer(playerId);
+            if (data != null) {
+                region.write(playerId, PlayerDataCodec.BINARY.encodePlayerData(data));
+            }
+        }
+        legacyStore.delete(playerId);
+        migrated.incrementAndGet();
+    }
+
+    @Override
+    public boolean supportsMigration() {
+        return true;
+    }
+
+    @Override
+    public Set<UUID> listLegacyPlayers() throws IOException {
+        return legacyStore.listPlayers();
+    }
+
+    @Override
+    public long getMigratedCount() {
+        return migrated.get();
+    }
+
+    private RegionFile region(UUID playerId) throws IOException {
+        return region((int) ((playerId.getMostSignificantBits() >>> 56) & (SHARD_COUNT - 1)));
+    }
+
+    private RegionFile region(int shard) throws IOException {
+        RegionFile region = regions.get(shard);
+        if (region != null) {
+            return region;
+        }
+
+        synchronized (regions) {
+            region = regions.get(shard);
+            if (region == null) {
+                region = new RegionFile(regionFile(shard));
+                regions.put(shard, region);
+            }
+            return region;
+        }
+    }
+
+    private Path regionFile(int shard) {
+        return directory.resolve(String.format("r.%02x.efr", shard));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (regions) {
+            for (RegionFile region : regions.values()) {
+                region.close();
+            }
+            regions.clear();
+        }
+    }
+}
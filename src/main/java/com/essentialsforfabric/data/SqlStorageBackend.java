@@ -0,0 +1,490 @@
+package com.essentialsforfabric.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores player data and warps in an embedded H2 database at {@code essentials/essentials.mv.db}.
+ * Writes and reads use separate connections.
+ */
+public class SqlStorageBackend implements StorageBackend {
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS players (uuid UUID PRIMARY KEY, last_world VARCHAR(255), last_x DOUBLE PRECISION, last_y DOUBLE PRECISION,"
+            + " last_z DOUBLE PRECISION, last_yaw REAL, last_pitch REAL)",
+        "CREATE TABLE IF NOT EXISTS homes (uuid UUID NOT NULL, name VARCHAR(255) NOT NULL, world VARCHAR(255) NOT NULL, x DOUBLE PRECISION NOT NULL,"
+            + " y DOUBLE PRECISION NOT NULL, z DOUBLE PRECISION NOT NULL, yaw REAL NOT NULL, pitch REAL NOT NULL, PRIMARY KEY (uuid, name))",
+        "ALTER TABLE players ADD COLUMN IF NOT EXISTS back_history VARBINARY(65535)",
+        "ALTER TABLE players ADD COLUMN IF NOT EXISTS kit_cooldowns VARBINARY(65535)",
+        "CREATE INDEX IF NOT EXISTS homes_name ON homes (name)",
+        "CREATE INDEX IF NOT EXISTS homes_world ON homes (world)",
+        "CREATE TABLE IF NOT EXISTS warps (name VARCHAR(255) PRIMARY KEY, world VARCHAR(255) NOT NULL, x DOUBLE PRECISION NOT NULL,"
+            + " y DOUBLE PRECISION NOT NULL, z DOUBLE PRECISION NOT NULL, yaw REAL NOT NULL, pitch REAL NOT NULL)"
+    };
+
+    private static final String INSERT_PLAYER = "MERGE INTO players (uuid) KEY (uuid) VALUES (?)";
+    private static final String SET_LAST_LOCATION = "MERGE INTO players (uuid, last_world, last_x, last_y, last_z, last_yaw, last_pitch) KEY (uuid) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SET_BACK_HISTORY = "MERGE INTO players (uuid, back_history) KEY (uuid) VALUES (?, ?)";
+    private static final String SET_KIT_COOLDOWNS = "MERGE INTO players (uuid, kit_cooldowns) KEY (uuid) VALUES (?, ?)";
+    private static final String SET_HOME = "MERGE INTO homes (uuid, name, world, x, y, z, yaw, pitch) KEY (uuid, name) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_HOME = "DELETE FROM homes WHERE uuid = ? AND name = ?";
+    private static final String DELETE_HOMES = "DELETE FROM homes WHERE uuid = ?";
+    private static final String SET_WARP = "MERGE INTO warps (name, world, x, y, z, yaw, pitch) KEY (name) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_WARP = "DELETE FROM warps WHERE name = ?";
+
+    private static final String SELECT_PLAYER = "SELECT last_world, last_x, last_y, last_z, last_yaw, last_pitch, back_history, kit_cooldowns FROM players WHERE uuid = ?";
+    private static final String SELECT_HOMES = "SELECT name, world, x, y, z, yaw, pitch FROM homes WHERE uuid = ?";
+    private static final String SELECT_HOMES_IN_WORLD = "SELECT uuid, name, world, x, y, z, yaw, pitch FROM homes WHERE world = ? ORDER BY uuid, name";
+    private static final String SELECT_ALL_PLAYERS = "SELECT p.uuid, p.last_world, p.last_x, p.last_y, p.last_z, p.last_yaw, p.last_pitch, p.back_history, p.kit_cooldowns,"
+        + " h.name, h.world, h.x, h.y, h.z, h.yaw, h.pitch FROM players p LEFT JOIN homes h ON h.uuid = p.uuid ORDER BY p.uuid";
+    private static final String SELECT_WARPS = "SELECT name, world, x, y, z, yaw, pitch FROM warps";
+
+    private final Connection writeConnection;
+    private final Connection readConnection;
+    private final FileStorageBackend legacyStore;
+    private final Set<UUID> knownPlayers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    public SqlStorageBackend(Path databaseFile, FileStorageBackend legacyStore) throws IOException {
+        this.legacyStore = legacyStore;
+
+        try {
+            Files.createDirectories(databaseFile.getParent());
+            String url = "jdbc:h2:file:" + databaseFile.toAbsolutePath();
+            // Going through the driver directly avoids DriverManager, which can't see jar-in-jar drivers
+            org.h2.Driver driver = new org.h2.Driver();
+            writeConnection = driver.connect(url, new Properties());
+            readConnection = driver.connect(url, new Properties());
+
+            try (Statement statement = writeConnection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            writeConnection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new IOException("Could not open database " + databaseFile, e);
+        }
+    }
+
+    @Override
+    public PlayerDataManager.PlayerData loadPlayer(UUID playerId) throws IOException {
+        PlayerDataManager.PlayerData data = select(playerId);
+        if (data != null) {
+            knownPlayers.add(playerId);
+            return data;
+        }
+        return legacyStore.loadPlayer(playerId);
+    }
+
+    private PlayerDataManager.PlayerData select(UUID playerId) throws IOException {
+        synchronized (readConnection) {
+            try (PreparedStatement selectPlayer = readConnection.prepareStatement(SELECT_PLAYER);
+                 PreparedStatement selectHomes = readConnection.prepareStatement(SELECT_HOMES)) {
+                selectPlayer.setObject(1, playerId);
+                PlayerDataManager.PlayerData data = null;
+                try (ResultSet result = selectPlayer.executeQuery()) {
+                    if (result.next()) {
+                        data = new PlayerDataManager.PlayerData();
+                        data.lastLocation = readLocation(result, 1);
+                        data.backHistory = readHistory(result, 7);
+                        data.kitCooldowns = readCooldowns(result, 8);
+                    }
+                }
+                if (data == null) {
+                    return null;
+                }
+
+                selectHomes.setObject(1, playerId);
+                try (ResultSet result = selectHomes.executeQuery()) {
+                    while (result.next()) {
+                        data.homes.put(result.getString(1), readLocation(result, 2));
+                    }
+                }
+                return data;
+            } catch (SQLException e) {
+                throw new IOException("Could not load player " + playerId, e);
+            }
+        }
+    }
+
+    @Override
+    public void savePlayer(UUID playerId, PlayerDataManager.PlayerData data) throws IOException {
+        synchronized (writeConnection) {
+            try (PreparedStatement setLastLocation = writeConnection.prepareStatement(SET_LAST_LOCATION);
+                 PreparedStatement setBackHistory = writeConnection.prepareStatement(SET_BACK_HISTORY);
+                 PreparedStatement setKitCooldowns = writeConnection.prepareStatement(SET_KIT_COOLDOWNS);
+                 PreparedStatement deleteHomes = writeConnection.prepareStatement(DELETE_HOMES);
+                 PreparedStatement setHome = writeConnection.prepareStatement(SET_HOME)) {
+                bindLastLocation(setLastLocation, playerId, data.lastLocation);
+                setLastLocation.executeUpdate();
+                bindBackHistory(setBackHistory, playerId, data.backHistory);
+                setBackHistory.executeUpdate();
+                bindKitCooldowns(setKitCooldowns, playerId, data.kitCooldowns);
+                setKitCooldowns.executeUpdate();
+
+                deleteHomes.setObject(1, playerId);
+                deleteHomes.executeUpdate();
+
+                for (Map.Entry<String, PlayerDataManager.LocationData> home : data.homes.entrySet()) {
+                    bindHome(setHome, playerId, home.getKey(), home.getValue());
+                    setHome.addBatch();
+                }
+                setHome.executeBatch();
+
+                commit();
+                knownPlayers.add(playerId);
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Could not save player " + playerId, e);
+            }
+        }
+    }
+
+    @Override
+    public void writePlayer(UUID playerId, List<JournalRecord> records) throws IOException {
+        writePlayers(Map.of(playerId, records));
+    }
+
+    @Override
+    public void writePlayers(Map<UUID, List<JournalRecord>> batch) throws IOException {
+        for (UUID playerId : batch.keySet()) {
+            // Records must not land on top of a player whose old files haven't been imported yet
+            if (!knownPlayers.contains(playerId)) {
+                migratePlayer(playerId);
+            }
+        }
+
+        synchronized (writeConnection) {
+            try (PreparedStatement insertPlayer = writeConnection.prepareStatement(INSERT_PLAYER);
+                 PreparedStatement setLastLocation = writeConnection.prepareStatement(SET_LAST_LOCATION);
+                 PreparedStatement setBackHistory = writeConnection.prepareStatement(SET_BACK_HISTORY);
+                 PreparedStatement setKitCooldowns = writeConnection.prepareStatement(SET_KIT_COOLDOWNS);
+                 PreparedStatement setHome = writeConnection.prepareStatement(SET_HOME);
+                 PreparedStatement deleteHome = writeConnection.prepareStatement(DELETE_HOME)) {
+                for (Map.Entry<UUID, List<JournalRecord>> entry : batch.entrySet()) {
+                    UUID playerId = entry.getKey();
+                    insertPlayer.setObject(1, playerId);
+                    insertPlayer.addBatch();
+
+                    for (JournalRecord record : entry.getValue()) {
+                        switch (record.type) {
+                            case SET_LAST_LOCATION -> {
+                                bindLastLocation(setLastLocation, playerId, record.location);
+                                setLastLocation.addBatch();
+                            }
+                            case SET_BACK_HISTORY -> {
+                                bindBackHistory(setBackHistory, playerId, record.history);
+                                setBackHistory.addBatch();
+                            }
+                            case SET_KIT_COOLDOWNS -> {
+                                bindKitCooldowns(setKitCooldowns, playerId, record.cooldowns);
+                                setKitCooldowns.addBatch();
+                            }
+                            case SET_HOME -> {
+                                bindHome(setHome, playerId, record.name, record.location);
+                                setHome.addBatch();
+                            }
+                            case DEL_HOME -> {
+                                deleteHome.setObject(1, playerId);
+                                deleteHome.setString(2, record.name);
+                                deleteHome.addBatch();
+                            }
+                            default -> {
+                            }
+                        }
+                    }
+                }
+
+                insertPlayer.executeBatch();
+                setLastLocation.executeBatch();
+                setBackHistory.executeBatch();
+                setKitCooldowns.executeBatch();
+                setHome.executeBatch();
+                deleteHome.executeBatch();
+                commit();
+                knownPlayers.addAll(batch.keySet());
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Could not write " + batch.size() + " players", e);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, PlayerDataManager.WarpData> loadWarps() throws IOException {
+        Map<String, PlayerDataManager.WarpData> warps = new HashMap<>();
+        synchronized (readConnection) {
+            try (PreparedStatement selectWarps = readConnection.prepareStatement(SELECT_WARPS);
+                 ResultSet result = selectWarps.executeQuery()) {
+                while (result.next()) {
+                    PlayerDataManager.LocationData location = readLocation(result, 2);
+                    warps.put(result.getString(1), new PlayerDataManager.WarpData(location.world, location.x, location.y, location.z, location.yaw, location.pitch));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not load warps", e);
+            }
+        }
+
+        if (warps.isEmpty() && legacyStore.hasWarps()) {
+            warps.putAll(legacyStore.loadWarps());
+            List<JournalRecord> records = new ArrayList<>(warps.size());
+            warps.forEach((name, warp) -> records.add(JournalRecord.setWarp(name, warp)));
+            writeWarps(records);
+            legacyStore.retireWarps();
+        }
+        return warps;
+    }
+
+    @Override
+    public void writeWarps(List<JournalRecord> records) throws IOException {
+        synchronized (writeConnection) {
+            try (PreparedStatement setWarp = writeConnection.prepareStatement(SET_WARP);
+                 PreparedStatement deleteWarp = writeConnection.prepareStatement(DELETE_WARP)) {
+                for (JournalRecord record : records) {
+                    if (record.type == JournalRecord.Type.SET_WARP) {
+                        setWarp.setString(1, record.name);
+                        bindLocation(setWarp, 2, record.location);
+                        setWarp.addBatch();
+                    } else if (record.type == JournalRecord.Type.DEL_WARP) {
+                        deleteWarp.setString(1, record.name);
+                        deleteWarp.addBatch();
+                    }
+                }
+
+                setWarp.executeBatch();
+                deleteWarp.executeBatch();
+                commit();
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Could not write warps", e);
+            }
+        }
+    }
+
+    @Override
+    public void forEachPlayer(PlayerVisitor visitor) throws IOException {
+        synchronized (readConnection) {
+            try (PreparedStatement selectAll = readConnection.prepareStatement(SELECT_ALL_PLAYERS);
+                 ResultSet result = selectAll.executeQuery()) {
+                UUID currentId = null;
+                PlayerDataManager.PlayerData current = null;
+                while (result.next()) {
+                    UUID playerId = result.getObject(1, UUID.class);
+                    if (!playerId.equals(currentId)) {
+                        if (current != null) {
+                            visitor.visit(currentId, current);
+                        }
+                        currentId = playerId;
+                        current = new PlayerDataManager.PlayerData();
+                        current.lastLocation = readLocation(result, 2);
+                        current.backHistory = readHistory(result, 8);
+                        current.kitCooldowns = readCooldowns(result, 9);
+                    }
+
+                    String homeName = result.getString(10);
+                    if (homeName != null) {
+                        current.homes.put(homeName, readLocation(result, 11));
+                    }
+                }
+                if (current != null) {
+                    visitor.visit(currentId, current);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not iterate players", e);
+            }
+        }
+
+        // Players that haven't been moved over yet
+        legacyStore.forEachPlayer(visitor);
+    }
+
+    @Override
+    public List<HomeEntry> findHomes(String world) throws IOException {
+        List<HomeEntry> homes = new ArrayList<>();
+        synchronized (readConnection) {
+            try (PreparedStatement selectHomes = readConnection.prepareStatement(SELECT_HOMES_IN_WORLD)) {
+                selectHomes.setString(1, world);
+                try (ResultSet result = selectHomes.executeQuery()) {
+                    while (result.next()) {
+                        homes.add(new HomeEntry(result.getObject(1, UUID.class), result.getString(2), readLocation(result, 3)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not query homes in " + world, e);
+            }
+        }
+        return homes;
+    }
+
+    @Override
+    public void migratePlayer(UUID playerId) throws IOException {
+        PlayerDataManager.PlayerData data = select(playerId);
+        if (data != null || !legacyStore.exists(playerId)) {
+            knownPlayers.add(playerId);
+            return;
+        }
+
+        data = legacyStore.loadPlayer(playerId);
+        if (data != null) {
+            savePlayer(playerId, data);
+        }
+        legacyStore.delete(playerId);
+        knownPlayers.add(playerId);
+        migrated.incrementAndGet();
+    }
+
+    @Override
+    public boolean hasHomeIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsMigration() {
+        return true;
+    }
+
+    @Override
+    public Set<UUID> listLegacyPlayers() throws IOException {
+        return legacyStore.listPlayers();
+    }
+
+    @Override
+    public long getMigratedCount() {
+        return migrated.get();
+    }
+
+    @Override
+    public String describe() {
+        return "sql (" + commits.get() + " transactions committed)";
+    }
+
+    private void commit() throws SQLException {
+        writeConnection.commit();
+        commits.incrementAndGet();
+    }
+
+    private void rollback() {
+        try {
+            writeConnection.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void bindLastLocation(PreparedStatement statement, UUID playerId, PlayerDataManager.LocationData location) throws SQLException {
+        statement.setObject(1, playerId);
+        if (location != null) {
+            bindLocation(statement, 2, location);
+        } else {
+            statement.setNull(2, Types.VARCHAR);
+            for (int column = 3; column <= 7; column++) {
+                statement.setNull(column, column <= 5 ? Types.DOUBLE : Types.REAL);
+            }
+        }
+    }
+
+    private static void bindBackHistory(PreparedStatement statement, UUID playerId, LocationHistory history) throws SQLException {
+        statement.setObject(1, playerId);
+        if (history == null) {
+            statement.setNull(2, Types.VARBINARY);
+            return;
+        }
+        try {
+            statement.setBytes(2, history.toBytes());
+        } catch (IOException e) {
+            throw new SQLException("Could not encode back history", e);
+        }
+    }
+
+    private static void bindKitCooldowns(PreparedStatement statement, UUID playerId, KitCooldowns cooldowns) throws SQLException {
+        statement.setObject(1, playerId);
+        if (cooldowns == null) {
+            statement.setNull(2, Types.VARBINARY);
+            return;
+        }
+        try {
+            statement.setBytes(2, cooldowns.toBytes());
+        } catch (IOException e) {
+            throw new SQLException("Could not encode kit cooldowns", e);
+        }
+    }
+
+    private static void bindHome(PreparedStatement statement, UUID playerId, String name, PlayerDataManager.LocationData location) throws SQLException {
+        statement.setObject(1, playerId);
+        statement.setString(2, name);
+        bindLocation(statement, 3, location);
+    }
+
+    private static void bindLocation(PreparedStatement statement, int column, PlayerDataManager.LocationData location) throws SQLException {
+        statement.setString(column, location.world);
+        statement.setDouble(column + 1, location.x);
+        statement.setDouble(column + 2, location.y);
+        statement.setDouble(column + 3, location.z);
+        statement.setFloat(column + 4, location.yaw);
+        statement.setFloat(column + 5, location.pitch);
+    }
+
+    private static PlayerDataManager.LocationData readLocation(ResultSet result, int column) throws SQLException {
+        String world = result.getString(column);
+        if (world == null) {
+            return null;
+        }
+        return new PlayerDataManager.LocationData(world.intern(), result.getDouble(column + 1), result.getDouble(column + 2),
+            result.getDouble(column + 3), result.getFloat(column + 4), result.getFloat(column + 5));
+    }
+
+    private static LocationHistory readHistory(ResultSet result, int column) throws SQLException {
+        byte[] bytes = result.getBytes(column);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return LocationHistory.fromBytes(bytes);
+        } catch (IOException e) {
+            throw new SQLException("Could not decode back history", e);
+        }
+    }
+
+    private static KitCooldowns readCooldowns(ResultSet result, int column) throws SQLException {
+        byte[] bytes = result.getBytes(column);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return KitCooldowns.fromBytes(bytes);
+        } catch (IOException e) {
+            throw new SQLException("Could not decode kit cooldowns", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (writeConnection) {
+                writeConnection.close();
+            }
+            synchronized (readConnection) {
+                readConnection.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not close database", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.essentialsforfabric.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Where player data and warps are persisted. Writes only come from the persistence queue's I/O
+ * thread, or from the server thread when the queue drains on shutdown.
+ */
+public interface StorageBackend extends Closeable {
+    PlayerDataManager.PlayerData loadPlayer(UUID playerId) throws IOException;
+
+    /**
+     * Replaces everything stored for a player with the given snapshot.
+     */
+    void savePlayer(UUID playerId, PlayerDataManager.PlayerData data) throws IOException;
+
+    void writePlayer(UUID playerId, List<JournalRecord> records) throws IOException;
+
+    /**
+     * Writes the pending records of several players. Backends that support it commit the whole
+     * batch at once; the default writes each player in turn and reports the first failure.
+     */
+    default void writePlayers(Map<UUID, List<JournalRecord>> batch) throws IOException {
+        IOException failure = null;
+        for (Map.Entry<UUID, List<JournalRecord>> entry : batch.entrySet()) {
+            try {
+                writePlayer(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    Map<String, PlayerDataManager.WarpData> loadWarps() throws IOException;
+
+    void writeWarps(List<JournalRecord> records) throws IOException;
+
+    /**
+     * Visits every stored player. Meant for admin tools and imports, not for anything on the tick path.
+     */
+    void forEachPlayer(PlayerVisitor visitor) throws IOException;
+
+    /**
+     * All homes set in the given world, e.g. {@code minecraft:the_end}. Reads every player unless
+     * {@link #hasHomeIndex} says otherwise, so it should run on the persistence I/O thread.
+     */
+    default List<HomeEntry> findHomes(String world) throws IOException {
+        List<HomeEntry> homes = new ArrayList<>();
+        forEachPlayer((playerId, data) -> {
+            for (Map.Entry<String, PlayerDataManager.LocationData> home : data.homes.entrySet()) {
+                if (home.getValue().world.equals(world)) {
+                    homes.add(new HomeEntry(playerId, home.getKey(), home.getValue()));
+                }
+            }
+        });
+        return homes;
+    }
+
+    /**
+     * Whether {@link #findHomes} is an indexed query rather than a scan of every player.
+     */
+    default boolean hasHomeIndex() {
+        return false;
+    }
+
+    /**
+     * Whether this backend can take over players from the per-file layout.
+     */
+    default boolean supportsMigration() {
+        return false;
+    }
+
+    /**
+     * Players still stored in the per-file layout, to be handed to {@link #migratePlayer}. Until
+     * then they are read from their old files.
+     */
+    default Set<UUID> listLegacyPlayers() throws IOException {
+        return Set.of();
+    }
+
+    /**
+     * Moves one player from the per-file layout into this backend, if they are still there. Only
+     * called on the I/O thread, like the write methods.
+     */
+    default void migratePlayer(UUID playerId) throws IOException {
+    }
+
+    default long getMigratedCount() {
+        return 0;
+    }
+
+    String describe();
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    @FunctionalInterface
+    interface PlayerVisitor {
+        void visit(UUID playerId, PlayerDataManager.PlayerData data) throws IOException;
+    }
+
+    record HomeEntry(UUID playerId, String name, PlayerDataManager.LocationData location) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.essentialsforfabric.data;
+
+import com.essentialsforfabric.jobs.Job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Moves players from the per-file layout into the region or SQL backend. The moves run in small
+ * batches on the persistence I/O thread; a step only hands out the next batch.
+ */
+public class StorageMigrationJob implements Job {
+    private static final int BATCH_SIZE = 16;
+
+    private final StorageBackend storage;
+    private final List<UUID> players;
+    private final long migratedBefore;
+    private int next;
+    private int done;
+    private CompletableFuture<Void> batch;
+
+    public StorageMigrationJob(StorageBackend storage, Collection<UUID> players) {
+        this.storage = storage;
+        this.players = new ArrayList<>(players);
+        this.migratedBefore = storage.getMigratedCount();
+    }
+
+    @Override
+    public String name() {
+        return "storage migration";
+    }
+
+    @Override
+    public boolean isReady() {
+        return batch == null ? hasRoom() : batch.isDone();
+    }
+
+    /**
+     * Leaves at least half the I/O queue to regular saves.
+     */
+    private static boolean hasRoom() {
+        return PersistenceQueue.getQueueDepth() * 2 < PersistenceQueue.getQueueCapacity();
+    }
+
+    @Override
+    public boolean step() throws IOException {
+        if (batch != null) {
+            if (!batch.isDone()) {
+                return false;
+            }
+            try {
+                batch.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } finally {
+                batch = null;
+            }
+            done = next;
+        }
+        if (next >= players.size()) {
+            return true;
+        }
+        if (!hasRoom()) {
+            return false;
+        }
+
+        List<UUID> slice = players.subList(next, Math.min(next + BATCH_SIZE, players.size()));
+        next += slice.size();
+        batch = PersistenceQueue.submitRead(() -> {
+            for (UUID playerId : slice) {
+                storage.migratePlayer(playerId);
+            }
+            return null;
+        });
+        return false;
+    }
+
+    @Override
+    public long progress() {
+        return done;
+    }
+
+    @Override
+    public long total() {
+        return players.size();
+    }
+
+    @Override
+    public String summary() {
+        return (storage.getMigratedCount() - migratedBefore) + " of " + players.size() + " players moved";
+    }
+}
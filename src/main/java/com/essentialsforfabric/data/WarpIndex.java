@@ -0,0 +1,194 @@
+package com.essentialsforfabric.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Spatial index over warps, with one quadtree on the x/z plane per world.
+ */
+public class WarpIndex {
+    private static final int LEAF_CAPACITY = 8;
+    private static final int MAX_DEPTH = 24;
+    private static final double WORLD_EXTENT = 1 << 25;
+
+    private final Map<String, Node> worlds = new HashMap<>();
+
+    public record Match(String name, PlayerDataManager.WarpData warp, double distance) {
+    }
+
+    private record Entry(String name, PlayerDataManager.WarpData warp) {
+    }
+
+    private record Candidate(double distanceSquared, Node node, Entry entry) {
+    }
+
+    public void add(String name, PlayerDataManager.WarpData warp) {
+        worlds.computeIfAbsent(warp.world, world -> new Node(-WORLD_EXTENT, -WORLD_EXTENT, WORLD_EXTENT * 2))
+            .insert(new Entry(name, warp), 0);
+    }
+
+    public void remove(String name, PlayerDataManager.WarpData warp) {
+        Node root = worlds.get(warp.world);
+        if (root != null && root.remove(name, warp.x, warp.z) && root.count == 0) {
+            worlds.remove(warp.world);
+        }
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    /**
+     * The {@code limit} warps in {@code world} closest to the given point, nearest first.
+     */
+    public List<Match> nearest(String world, double x, double y, double z, int limit) {
+        return search(world, x, y, z, limit, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Up to {@code limit} warps in {@code world} within {@code radius} blocks of the given point, nearest first.
+     */
+    public List<Match> within(String world, double x, double y, double z, double radius, int limit) {
+        return search(world, x, y, z, limit, radius);
+    }
+
+    private List<Match> search(String world, double x, double y, double z, int limit, double radius) {
+        List<Match> matches = new ArrayList<>();
+        Node root = worlds.get(world);
+        if (root == null || limit <= 0) {
+            return matches;
+        }
+
+        double maxDistanceSquared = radius * radius;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distanceSquared));
+        queue.add(new Candidate(root.distanceSquared(x, z), root, null));
+
+        while (!queue.isEmpty() && matches.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.distanceSquared() > maxDistanceSquared) {
+                break;
+            }
+
+            if (candidate.entry() != null) {
+                matches.add(new Match(candidate.entry().name(), candidate.entry().warp(), Math.sqrt(candidate.distanceSquared())));
+                continue;
+            }
+
+            Node node = candidate.node();
+            if (node.children == null) {
+                for (Entry entry : node.entries) {
+                    double dx = entry.warp().x - x;
+                    double dy = entry.warp().y - y;
+                    double dz = entry.warp().z - z;
+                    queue.add(new Candidate(dx * dx + dy * dy + dz * dz, null, entry));
+                }
+            } else {
+                for (Node child : node.children) {
+                    if (child.count > 0) {
+                        queue.add(new Candidate(child.distanceSquared(x, z), child, null));
+                    }
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    private static class Node {
+        private final double minX;
+        private final double minZ;
+        private final double size;
+        private List<Entry> entries = new ArrayList<>();
+        private Node[] children;
+        private int count;
+
+        Node(double minX, double minZ, double size) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.size = size;
+        }
+
+        void insert(Entry entry, int depth) {
+            count++;
+            if (children != null) {
+                child(entry.warp().x, entry.warp().z).insert(entry, depth + 1);
+                return;
+            }
+
+            entries.add(entry);
+            if (entries.size() > LEAF_CAPACITY && depth < MAX_DEPTH) {
+                split(depth);
+            }
+        }
+
+        boolean remove(String name, double x, double z) {
+            boolean removed;
+            if (children == null) {
+                removed = entries.removeIf(entry -> entry.name().equals(name));
+            } else {
+                removed = child(x, z).remove(name, x, z);
+            }
+
+            if (!removed) {
+                return false;
+            }
+            count--;
+            if (children != null && count <= LEAF_CAPACITY) {
+                collapse();
+            }
+            return true;
+        }
+
+        private void split(int depth) {
+            double half = size / 2;
+            children = new Node[]{
+                new Node(minX, minZ, half),
+                new Node(minX + half, minZ, half),
+                new Node(minX, minZ + half, half),
+                new Node(minX + half, minZ + half, half)
+            };
+
+            List<Entry> moved = entries;
+            entries = null;
+            for (Entry entry : moved) {
+                child(entry.warp().x, entry.warp().z).insert(entry, depth + 1);
+            }
+        }
+
+        private void collapse() {
+            List<Entry> gathered = new ArrayList<>(count);
+            collect(gathered);
+            entries = gathered;
+            children = null;
+        }
+
+        private void collect(List<Entry> into) {
+            if (children == null) {
+                into.addAll(entries);
+                return;
+            }
+            for (Node child : children) {
+                child.collect(into);
+            }
+        }
+
+        private Node child(double x, double z) {
+            double half = size / 2;
+            int index = (x >= minX + half ? 1 : 0) | (z >= minZ + half ? 2 : 0);
+            return children[index];
+        }
+
+        /**
+         * Squared horizontal distance from the point to this cell, 0 if the point is inside it.
+         */
+        double distanceSquared(double x, double z) {
+            double dx = Math.max(0, Math.max(minX - x, x - (minX + size)));
+            double dz = Math.max(0, Math.max(minZ - z, z - (minZ + size)));
+            return dx * dx + dz * dz;
+        }
+    }
+}
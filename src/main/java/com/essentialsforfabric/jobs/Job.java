@@ -0,0 +1,48 @@
+package com.essentialsforfabric.jobs;
+
+import java.io.IOException;
+
+/**
+ * A long-running piece of work split into small steps, run by the {@link JobExecutor} on the
+ * server thread.
+ */
+public interface Job {
+    String name();
+
+    /**
+     * Does the next unit of work.
+     *
+     * @return true once there is nothing left to do
+     */
+    boolean step() throws IOException;
+
+    long progress();
+
+    /**
+     * Total units of work, or -1 if not known up front.
+     */
+    default long total() {
+        return -1;
+    }
+
+    /**
+     * Extra detail shown when the job has finished, or {@code null}.
+     */
+    default String summary() {
+        return null;
+    }
+
+    /**
+     * Whether a step could make progress right now. Jobs waiting on their own background threads
+     * return false and are skipped for the rest of the tick instead of being stepped in a loop.
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * Called once the job has finished, failed or been cancelled, to stop any threads it started.
+     */
+    default void close() {
+    }
+}
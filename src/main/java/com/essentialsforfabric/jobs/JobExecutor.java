@@ -0,0 +1,262 @@
+package com.essentialsforfabric.jobs;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs background {@link Job}s in time slices at the end of each server tick, shrinking the slice
+ * as the tick time approaches {@code jobTargetMspt}.
+ */
+public class JobExecutor {
+    private static final int STARVATION_TICKS = 20;
+    private static final int MAX_FINISHED_JOBS = 10;
+
+    private static final Map<Integer, JobHandle> jobs = new LinkedHashMap<>();
+    private static int nextId = 1;
+    private static int starvedTicks;
+    private static long lastBudgetNanos;
+    private static float lastMspt;
+
+    public enum State {
+        RUNNING,
+        PAUSED,
+        FINISHED,
+        FAILED,
+        CANCELLED
+    }
+
+    public static class JobHandle {
+        public final int id;
+        public final Job job;
+        private final ServerCommandSource owner;
+        private final long startedAt = System.nanoTime();
+        private State state = State.RUNNING;
+        private long steps;
+        private long busyNanos;
+        private long maxStepNanos;
+        private long activeTicks;
+        private long lastActiveTick = -1;
+        private long endedAt;
+        private String error;
+
+        JobHandle(int id, Job job, ServerCommandSource owner) {
+            this.id = id;
+            this.job = job;
+            this.owner = owner;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        public long getAverageStepNanos() {
+            return steps == 0 ? 0 : busyNanos / steps;
+        }
+
+        public long getMaxStepNanos() {
+            return maxStepNanos;
+        }
+
+        public long getActiveTicks() {
+            return activeTicks;
+        }
+
+        public long getElapsedNanos() {
+            return (endedAt != 0 ? endedAt : System.nanoTime()) - startedAt;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        boolean isDone() {
+            return state == State.FINISHED || state == State.FAILED || state == State.CANCELLED;
+        }
+    }
+
+    /**
+     * Starts running {@code job} from the next tick. {@code owner} is told when it finishes or fails.
+     */
+    public static JobHandle submit(Job job, ServerCommandSource owner) {
+        JobHandle handle = new JobHandle(nextId++, job, owner);
+        jobs.put(handle.id, handle);
+        return handle;
+    }
+
+    public static JobHandle get(int id) {
+        return jobs.get(id);
+    }
+
+    public static Collection<JobHandle> getJobs() {
+        return jobs.values();
+    }
+
+    public static boolean pause(int id) {
+        JobHandle handle = jobs.get(id);
+        if (handle == null || handle.state != State.RUNNING) {
+            return false;
+        }
+        handle.state = State.PAUSED;
+        return true;
+    }
+
+    public static boolean resume(int id) {
+        JobHandle handle = jobs.get(id);
+        if (handle == null || handle.state != State.PAUSED) {
+            return false;
+        }
+        handle.state = State.RUNNING;
+        return true;
+    }
+
+    public static boolean cancel(int id) {
+        JobHandle handle = jobs.get(id);
+        if (handle == null || handle.isDone()) {
+            return false;
+        }
+        end(handle, State.CANCELLED);
+        return true;
+    }
+
+    public static long getLastBudgetNanos() {
+        return lastBudgetNanos;
+    }
+
+    public static float getLastMspt() {
+        return lastMspt;
+    }
+
+    public static void tick(MinecraftServer server) {
+        List<JobHandle> running = new ArrayList<>();
+        for (JobHandle handle : jobs.values()) {
+            if (handle.state == State.RUNNING && handle.job.isReady()) {
+                running.add(handle);
+            }
+        }
+
+        EssentialsConfig config = EssentialsConfig.get();
+        lastMspt = server.getTickTime();
+        long budget = (long) (Math.min(config.jobMaxMillisPerTick, config.jobTargetMspt - lastMspt) * 1_000_000L);
+        lastBudgetNanos = Math.max(0, budget);
+        if (running.isEmpty()) {
+            starvedTicks = 0;
+            return;
+        }
+        if (budget <= 0 && ++starvedTicks < STARVATION_TICKS) {
+            return;
+        }
+        starvedTicks = 0;
+
+        long deadline = System.nanoTime() + Math.max(0, budget);
+        long tick = server.getTicks();
+        // Every running job gets at least one step per slice, then turns continue until time is up
+        do {
+            Iterator<JobHandle> iterator = running.iterator();
+            while (iterator.hasNext()) {
+                JobHandle handle = iterator.next();
+                if (handle.state != State.RUNNING || !handle.job.isReady() || !step(handle, tick)) {
+                    iterator.remove();
+                }
+            }
+        } while (!running.isEmpty() && System.nanoTime() < deadline);
+    }
+
+    public static void clear() {
+        for (JobHandle handle : jobs.values()) {
+            if (!handle.isDone()) {
+                handle.state = State.CANCELLED;
+                handle.job.close();
+            }
+        }
+        jobs.clear();
+        nextId = 1;
+        starvedTicks = 0;
+    }
+
+    /**
+     * @return whether the job should keep running
+     */
+    private static boolean step(JobHandle handle, long tick) {
+        long started = System.nanoTime();
+        boolean done;
+        try {
+            done = handle.job.step();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            handle.error = e.getMessage();
+            done = true;
+        }
+        long took = System.nanoTime() - started;
+
+        handle.steps++;
+        handle.busyNanos += took;
+        handle.maxStepNanos = Math.max(handle.maxStepNanos, took);
+        if (handle.lastActiveTick != tick) {
+            handle.lastActiveTick = tick;
+            handle.activeTicks++;
+        }
+
+        if (done) {
+            end(handle, handle.error != null ? State.FAILED : State.FINISHED);
+        }
+        return !done;
+    }
+
+    private static void end(JobHandle handle, State state) {
+        handle.state = state;
+        handle.endedAt = System.nanoTime();
+        handle.job.close();
+
+        String label = "Job #" + handle.id + " (" + handle.job.name() + ")";
+        switch (state) {
+            case FINISHED -> {
+                String summary = handle.job.summary();
+                handle.owner.sendFeedback(() -> Text.literal(label + " finished in " + formatSeconds(handle.getElapsedNanos())
+                    + (summary != null ? ": " + summary : "")).formatted(Formatting.GREEN), true);
+            }
+            case FAILED -> handle.owner.sendError(Text.literal(label + " failed: " + handle.error));
+            default -> {
+            }
+        }
+        pruneFinished();
+    }
+
+    private static void pruneFinished() {
+        int done = 0;
+        for (JobHandle handle : jobs.values()) {
+            if (handle.isDone()) {
+                done++;
+            }
+        }
+        Iterator<JobHandle> iterator = jobs.values().iterator();
+        while (done > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+                done--;
+            }
+        }
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format("%.1fs", nanos / 1_000_000_000.0);
+    }
+}
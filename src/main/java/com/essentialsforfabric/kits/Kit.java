@@ -0,0 +1,57 @@
+package com.essentialsforfabric.kits;
+
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.List;
+
+/**
+ * A kit as read from the kits file. Its items are parsed once into template stacks that never
+ * leave this class; every claim gets fresh copies, so nothing is parsed or looked up per use.
+ */
+public class Kit {
+    private final String name;
+    private final List<ItemStack> items;
+    private final long cooldownMillis;
+    private final int permission;
+
+    Kit(String name, List<ItemStack> items, long cooldownMillis, int permission) {
+        this.name = name;
+        this.items = List.copyOf(items);
+        this.cooldownMillis = cooldownMillis;
+        this.permission = permission;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 0 for no cooldown, or a negative value if the kit can only be claimed once
+     */
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    /**
+     * Compiled id of the kit's {@code essentials.kits.<name>} node.
+     */
+    public int getPermission() {
+        return permission;
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * Gives the player a copy of every item, dropping whatever doesn't fit at their feet.
+     */
+    public void giveTo(ServerPlayerEntity player) {
+        PlayerInventory inventory = player.getInventory();
+        for (ItemStack template : items) {
+            inventory.offerOrDrop(template.copy());
+        }
+    }
+}
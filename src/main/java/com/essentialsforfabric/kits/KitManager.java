@@ -0,0 +1,214 @@
+package com.essentialsforfabric.kits;
+
+import com.essentialsforfabric.EssentialsForFabric;
+import com.essentialsforfabric.data.KitCooldowns;
+import com.essentialsforfabric.data.NameTrie;
+import com.essentialsforfabric.data.PlayerDataManager;
+import com.essentialsforfabric.util.PermissionUtil;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.StringNbtReader;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Kit definitions, read from {@code config/essentials-for-fabric-kits.json} when the server starts
+ * and on {@code /essentials kits reload}.
+ */
+public class KitManager {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type DEFINITIONS_TYPE = new TypeToken<Map<String, KitDefinition>>() {}.getType();
+
+    private static Map<String, Kit> kits = Map.of();
+    private static final NameTrie names = new NameTrie();
+    private static List<String> problems = List.of();
+
+    static class KitDefinition {
+        // 0 for no cooldown, -1 to only allow claiming once
+        long cooldownSeconds;
+        List<ItemDefinition> items = new ArrayList<>();
+    }
+
+    static class ItemDefinition {
+        String item;
+        int count = 1;
+        // Optional, in the same SNBT syntax as /give
+        String nbt;
+    }
+
+    /**
+     * Reads the kits file, writing an example one first if there is none. Kits that fail to parse
+     * are left out and reported through {@link #getProblems}; the rest still load.
+     */
+    public static void load() {
+        Path kitsFile = FabricLoader.getInstance().getConfigDir().resolve(EssentialsForFabric.MOD_ID + "-kits.json");
+        Map<String, KitDefinition> definitions;
+        try {
+            if (!Files.exists(kitsFile)) {
+                Files.createDirectories(kitsFile.getParent());
+                try (Writer writer = Files.newBufferedWriter(kitsFile, StandardCharsets.UTF_8)) {
+                    GSON.toJson(defaults(), DEFINITIONS_TYPE, writer);
+                }
+            }
+            try (Reader reader = Files.newBufferedReader(kitsFile, StandardCharsets.UTF_8)) {
+                definitions = GSON.fromJson(reader, DEFINITIONS_TYPE);
+            }
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+            problems = List.of("Could not read " + kitsFile.getFileName() + ": " + e.getMessage());
+            return;
+        }
+
+        Map<String, Kit> loaded = new TreeMap<>();
+        List<String> failed = new ArrayList<>();
+        if (definitions != null) {
+            for (Map.Entry<String, KitDefinition> entry : definitions.entrySet()) {
+                String name = entry.getKey().toLowerCase(Locale.ROOT).intern();
+                try {
+                    loaded.put(name, compile(name, entry.getValue()));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    failed.add(e.getMessage());
+                }
+            }
+        }
+
+        kits = loaded;
+        problems = List.copyOf(failed);
+        names.clear();
+        loaded.keySet().forEach(names::add);
+    }
+
+    private static Kit compile(String name, KitDefinition definition) throws IOException {
+        if (definition == null || definition.items == null || definition.items.isEmpty()) {
+            throw new IOException("Kit '" + name + "' has no items");
+        }
+
+        List<ItemStack> items = new ArrayList<>(definition.items.size());
+        for (ItemDefinition itemDefinition : definition.items) {
+            Identifier id = itemDefinition.item != null ? Identifier.tryParse(itemDefinition.item) : null;
+            Optional<Item> item = id != null ? Registries.ITEM.getOrEmpty(id) : Optional.empty();
+            if (item.isEmpty()) {
+                throw new IOException("Kit '" + name + "' has an unknown item '" + itemDefinition.item + "'");
+            }
+
+            ItemStack stack = new ItemStack(item.get(), Math.max(1, itemDefinition.count));
+            if (itemDefinition.nbt != null && !itemDefinition.nbt.isEmpty()) {
+                try {
+                    stack.setNbt(StringNbtReader.parse(itemDefinition.nbt));
+                } catch (CommandSyntaxException e) {
+                    throw new IOException("Kit '" + name + "' has invalid NBT for " + itemDefinition.item + ": " + e.getMessage(), e);
+                }
+            }
+            // Oversized counts are split so every copy is a stack the inventory accepts as is
+            while (stack.getCount() > stack.getMaxCount()) {
+                ItemStack split = stack.copy();
+                split.setCount(stack.getMaxCount());
+                stack.setCount(stack.getCount() - stack.getMaxCount());
+                items.add(split);
+            }
+            items.add(stack);
+        }
+
+        long cooldownMillis = definition.cooldownSeconds < 0 ? -1 : definition.cooldownSeconds * 1000L;
+        return new Kit(name, items, cooldownMillis, PermissionUtil.register("essentials.kits." + name, 0));
+    }
+
+    private static Map<String, KitDefinition> defaults() {
+        KitDefinition tools = new KitDefinition();
+        tools.cooldownSeconds = 600;
+        for (String item : new String[] {"minecraft:stone_sword", "minecraft:stone_pickaxe", "minecraft:stone_axe", "minecraft:stone_shovel"}) {
+            ItemDefinition itemDefinition = new ItemDefinition();
+            itemDefinition.item = item;
+            tools.items.add(itemDefinition);
+        }
+        ItemDefinition bread = new ItemDefinition();
+        bread.item = "minecraft:bread";
+        bread.count = 16;
+        tools.items.add(bread);
+
+        Map<String, KitDefinition> defaults = new LinkedHashMap<>();
+        defaults.put("tools", tools);
+        return defaults;
+    }
+
+    public static Kit get(String name) {
+        return kits.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Every loaded kit, sorted by name.
+     */
+    public static List<Kit> getAll() {
+        return new ArrayList<>(kits.values());
+    }
+
+    /**
+     * Trie over all kit names, safe to query from any thread.
+     */
+    public static NameTrie getNames() {
+        return names;
+    }
+
+    /**
+     * Why kits were left out of the last load, if any were.
+     */
+    public static List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * How long until the player may claim the kit again, 0 if they may now, or
+     * {@link KitCooldowns#NEVER} for a one-time kit they already have. Must be called on the
+     * server thread, once {@link PlayerDataManager#isLoading} is false.
+     */
+    public static long getRemainingMillis(UUID playerId, Kit kit, long nowMillis) {
+        KitCooldowns cooldowns = kit.getCooldownMillis() != 0 ? PlayerDataManager.getKitCooldowns(playerId) : null;
+        if (cooldowns == null) {
+            return 0;
+        }
+        long readyAt = cooldowns.getReadyAt(kit.getName());
+        if (readyAt == KitCooldowns.NEVER) {
+            return KitCooldowns.NEVER;
+        }
+        return Math.max(0, readyAt - nowMillis);
+    }
+
+    /**
+     * Starts the kit's cooldown and hands it out, without checking whether the player may claim it.
+     *
+     * @return false, without giving anything, if the cooldown could not be recorded
+     */
+    public static boolean claim(ServerPlayerEntity player, Kit kit, long nowMillis) {
+        long cooldownMillis = kit.getCooldownMillis();
+        if (cooldownMillis != 0 && !PlayerDataManager.setKitCooldown(player.getUuid(), kit.getName(),
+            cooldownMillis < 0 ? KitCooldowns.NEVER : nowMillis + cooldownMillis)) {
+            return false;
+        }
+        kit.giveTo(player);
+        return true;
+    }
+}
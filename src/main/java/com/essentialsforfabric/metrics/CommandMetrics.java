@@ -0,0 +1,45 @@
+package com.essentialsforfabric.metrics;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+/**
+ * Copies command trees into the server's dispatcher with every executing node timed.
+ */
+public class CommandMetrics {
+    public static <S> void register(CommandDispatcher<S> commands, CommandDispatcher<S> target) {
+        for (CommandNode<S> node : commands.getRoot().getChildren()) {
+            target.getRoot().addChild(instrument(node, ""));
+        }
+    }
+
+    private static <S> CommandNode<S> instrument(CommandNode<S> node, String path) {
+        if (node instanceof LiteralCommandNode) {
+            path = path.isEmpty() ? node.getName() : path + " " + node.getName();
+        }
+
+        ArgumentBuilder<S, ?> builder = node.createBuilder();
+        Command<S> command = node.getCommand();
+        if (command != null) {
+            builder.executes(timed(Metrics.command(path), command));
+        }
+        for (CommandNode<S> child : node.getChildren()) {
+            builder.then(instrument(child, path));
+        }
+        return builder.build();
+    }
+
+    private static <S> Command<S> timed(LatencyHistogram histogram, Command<S> command) {
+        return context -> {
+            long start = System.nanoTime();
+            try {
+                return command.run(context);
+            } finally {
+                histogram.record(System.nanoTime() - start);
+            }
+        };
+    }
+}
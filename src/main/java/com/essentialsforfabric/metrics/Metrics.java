@@ -0,0 +1,104 @@
+package com.essentialsforfabric.metrics;
+
+import com.essentialsforfabric.afk.AfkTracker;
+import com.essentialsforfabric.data.PersistenceQueue;
+import com.essentialsforfabric.data.PlayerDataLoader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms for commands and storage operations, keyed by name.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private static final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> storage = new ConcurrentHashMap<>();
+
+    /**
+     * @param name the command's literal path, e.g. {@code warps near}
+     */
+    public static LatencyHistogram command(String name) {
+        return commands.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @param operation e.g. {@code load_player}
+     */
+    public static LatencyHistogram storage(String operation) {
+        return storage.computeIfAbsent(operation, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Commands that have run at least once, most used first.
+     */
+    public static List<Map.Entry<String, LatencyHistogram>> getCommands() {
+        return sortedByCount(commands);
+    }
+
+    public static List<Map.Entry<String, LatencyHistogram>> getStorage() {
+        return sortedByCount(storage);
+    }
+
+    /**
+     * Everything above plus a few queue gauges in the Prometheus text exposition format.
+     */
+    public static String renderPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        renderSummaries(out, "essentials_command_duration_seconds", "Time spent running each command", "command", commands);
+        renderSummaries(out, "essentials_storage_duration_seconds", "Time spent in storage backend operations", "operation", storage);
+
+        renderValue(out, "essentials_storage_queue_depth", "gauge", "Write batches waiting for the I/O thread", PersistenceQueue.getQueueDepth());
+        renderValue(out, "essentials_storage_writes_completed_total", "counter", "Write batches completed", PersistenceQueue.getWritesCompleted());
+        renderValue(out, "essentials_storage_writes_failed_total", "counter", "Write batches that failed", PersistenceQueue.getWritesFailed());
+        renderValue(out, "essentials_storage_deferred_flushes_total", "counter", "Flushes deferred because the write queue was full", PersistenceQueue.getDeferredFlushes());
+        renderValue(out, "essentials_player_loads_pending", "gauge", "Player data loads still running", PlayerDataLoader.getPendingCount());
+        renderValue(out, "essentials_afk_players", "gauge", "Online players currently flagged AFK", AfkTracker.getAfkCount());
+        return out.toString();
+    }
+
+    private static List<Map.Entry<String, LatencyHistogram>> sortedByCount(Map<String, LatencyHistogram> histograms) {
+        List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        entries.sort(Comparator.comparingLong((Map.Entry<String, LatencyHistogram> entry) -> entry.getValue().getCount()).reversed());
+        return entries;
+    }
+
+    private static void renderSummaries(StringBuilder out, String metric, String help, String label, Map<String, LatencyHistogram> histograms) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(" summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = escape(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.append(metric).append('{').append(label).append("=\"").append(name).append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getPercentileNanos(quantile))).append('\n');
+            }
+            out.append(metric).append("_sum{").append(label).append("=\"").append(name).append("\"} ").append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append(metric).append("_count{").append(label).append("=\"").append(name).append("\"} ").append(histogram.getCount()).append('\n');
+        }
+    }
+
+    private static void renderValue(StringBuilder out, String metric, String type, String help, long value) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+        out.append(metric).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1_000_000_000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
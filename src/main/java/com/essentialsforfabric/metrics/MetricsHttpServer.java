@@ -0,0 +1,70 @@
+package com.essentialsforfabric.metrics;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics#renderPrometheus()} at {@code /metrics} on the loopback interface only,
+ * for a Prometheus agent running on the same machine. Off unless {@code metricsPort} is set.
+ */
+public class MetricsHttpServer {
+    private static HttpServer httpServer;
+    private static ExecutorService executor;
+
+    public static void start() {
+        int port = EssentialsConfig.get().metricsPort;
+        if (port <= 0 || httpServer != null) {
+            return;
+        }
+
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Essentials-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.createContext("/metrics", MetricsHttpServer::handle);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+    }
+
+    public static void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.renderPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.essentialsforfabric.mixin;
+
+import com.essentialsforfabric.util.PermissionUtil;
+import net.minecraft.server.PlayerManager;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(PlayerManager.class)
+public class PlayerManagerMixin {
+    // The command tree is resent whenever a player is opped or deopped
+    @Inject(method = "sendCommandTree(Lnet/minecraft/server/network/ServerPlayerEntity;I)V", at = @At("HEAD"))
+    private void essentials$invalidatePermissions(ServerPlayerEntity player, int permissionLevel, CallbackInfo ci) {
+        PermissionUtil.invalidate(player.getUuid());
+    }
+}
@@ -0,0 +1,23 @@
+package com.essentialsforfabric.mixin;
+
+import com.essentialsforfabric.teleport.TeleportScheduler;
+import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerPlayNetworkHandler.class)
+public class ServerPlayNetworkHandlerMixin {
+    @Shadow
+    public ServerPlayerEntity player;
+
+    // The packet is re-dispatched to the server thread before the method body runs, so this only fires there
+    @Inject(method = "onPlayerMove(Lnet/minecraft/network/packet/c2s/play/PlayerMoveC2SPacket;)V", at = @At("TAIL"))
+    private void essentials$checkTeleportWarmup(PlayerMoveC2SPacket packet, CallbackInfo ci) {
+        TeleportScheduler.onMove(player);
+    }
+}
@@ -0,0 +1,18 @@
+package com.essentialsforfabric.mixin;
+
+import com.essentialsforfabric.afk.AfkTracker;
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.SleepManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+@Mixin(SleepManager.class)
+public class SleepManagerMixin {
+    // AFK players are left out like spectators, so they neither hold up nor count towards skipping the night
+    @Redirect(method = "update", at = @At(value = "INVOKE", target = "Lnet/minecraft/server/network/ServerPlayerEntity;isSpectator()Z"))
+    private boolean essentials$skipAfkPlayers(ServerPlayerEntity player) {
+        return player.isSpectator() || EssentialsConfig.get().afkIgnoreSleep && AfkTracker.isAfk(player.getUuid());
+    }
+}
@@ -0,0 +1,104 @@
+package com.essentialsforfabric.teleport;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the chunk at a teleport destination before the player is moved there, falling back to a
+ * plain teleport after {@code chunkPreloadTimeoutTicks}.
+ */
+public class ChunkPreloader {
+    private static final ChunkTicketType<ChunkPos> TELEPORT_TICKET =
+        ChunkTicketType.create("essentials_teleport", Comparator.comparingLong(ChunkPos::toLong), 300);
+
+    private static final LongAdder preloads = new LongAdder();
+    private static final LongAdder alreadyLoaded = new LongAdder();
+    private static final LongAdder timeouts = new LongAdder();
+    private static final LongAdder totalWaitNanos = new LongAdder();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+    private static final AtomicLong pending = new AtomicLong();
+
+    /**
+     * Runs {@code teleport} once the chunk containing x/z in {@code world} is loaded, or
+     * straight away if it already is. Does nothing if the player has left in the meantime.
+     */
+    public static void preload(ServerPlayerEntity player, ServerWorld world, double x, double z, Runnable teleport) {
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        ServerChunkManager chunkManager = world.getChunkManager();
+
+        if (chunkManager.isChunkLoaded(chunkX, chunkZ)) {
+            alreadyLoaded.increment();
+            teleport.run();
+            return;
+        }
+
+        ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+        chunkManager.addTicket(TELEPORT_TICKET, pos, 1, pos);
+        preloads.increment();
+        pending.incrementAndGet();
+
+        MinecraftServer server = world.getServer();
+        long started = System.nanoTime();
+        long timeoutMillis = Math.max(1, EssentialsConfig.get().chunkPreloadTimeoutTicks) * 50L;
+
+        CompletableFuture<Boolean> ready = chunkManager.getChunkFutureSyncOnMainThread(chunkX, chunkZ, ChunkStatus.FULL, true)
+            // An unloaded result means the chunk didn't get there, which is treated like a timeout
+            .thenApply(either -> either.left().isPresent())
+            .completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        ready.whenCompleteAsync((loaded, error) -> {
+            pending.decrementAndGet();
+            long waited = System.nanoTime() - started;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            if (error != null) {
+                error.printStackTrace();
+            }
+            if (error != null || !loaded) {
+                timeouts.increment();
+            }
+
+            if (!player.isRemoved()) {
+                teleport.run();
+            }
+        }, server);
+    }
+
+    public static long getPreloads() {
+        return preloads.sum();
+    }
+
+    public static long getAlreadyLoaded() {
+        return alreadyLoaded.sum();
+    }
+
+    public static long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public static long getPendingCount() {
+        return pending.get();
+    }
+
+    public static long getAverageWaitNanos() {
+        long count = preloads.sum() - pending.get();
+        return count <= 0 ? 0 : totalWaitNanos.sum() / count;
+    }
+
+    public static long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+}
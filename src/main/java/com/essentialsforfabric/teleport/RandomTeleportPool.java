@@ -0,0 +1,189 @@
+package com.essentialsforfabric.teleport;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.tag.BlockTags;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Safe random destinations for /rtp, found ahead of time for each dimension in
+ * {@code rtpDimensions} and kept loaded until used.
+ */
+public class RandomTeleportPool {
+    private static final ChunkTicketType<ChunkPos> POOL_TICKET =
+        ChunkTicketType.create("essentials_rtp", Comparator.comparingLong(ChunkPos::toLong));
+    private static final ChunkTicketType<ChunkPos> ARRIVAL_TICKET =
+        ChunkTicketType.create("essentials_rtp_arrival", Comparator.comparingLong(ChunkPos::toLong), 300);
+    private static final int MAX_SEARCHES_IN_FLIGHT = 4;
+    private static final int SEARCH_TIMEOUT_SECONDS = 30;
+
+    private static final Map<RegistryKey<World>, Pool> pools = new HashMap<>();
+    private static final Random random = new Random();
+
+    private static long searches;
+    private static long rejected;
+
+    private static class Pool {
+        final Deque<BlockPos> locations = new ArrayDeque<>();
+        int inFlight;
+    }
+
+    public static void tick(MinecraftServer server) {
+        EssentialsConfig config = EssentialsConfig.get();
+        int budget = config.rtpSearchesPerTick;
+        if (budget <= 0 || config.rtpPoolSize <= 0) {
+            return;
+        }
+
+        for (ServerWorld world : server.getWorlds()) {
+            if (!isAvailable(world)) {
+                continue;
+            }
+            Pool pool = pools.computeIfAbsent(world.getRegistryKey(), key -> new Pool());
+            while (budget > 0 && pool.inFlight < MAX_SEARCHES_IN_FLIGHT && pool.locations.size() + pool.inFlight < config.rtpPoolSize) {
+                search(world, pool);
+                budget--;
+            }
+        }
+    }
+
+    /**
+     * Takes a ready location in {@code world}, or {@code null} if none is available right now.
+     * The caller should teleport there within the same tick.
+     */
+    public static BlockPos take(ServerWorld world) {
+        Pool pool = pools.get(world.getRegistryKey());
+        if (pool == null) {
+            return null;
+        }
+
+        BlockPos pos;
+        while ((pos = pool.locations.pollFirst()) != null) {
+            ChunkPos chunk = new ChunkPos(pos);
+            // Hand the chunk over to a short-lived ticket that covers the player's arrival
+            world.getChunkManager().addTicket(ARRIVAL_TICKET, chunk, 1, chunk);
+            world.getChunkManager().removeTicket(POOL_TICKET, chunk, 0, chunk);
+
+            // The spot may have changed since it was checked
+            if (findSafeSpot(world, pos.getX(), pos.getZ()) != null) {
+                return pos;
+            }
+            rejected++;
+        }
+        return null;
+    }
+
+    public static boolean isAvailable(ServerWorld world) {
+        return !world.getDimension().hasCeiling()
+            && EssentialsConfig.get().rtpDimensions.contains(world.getRegistryKey().getValue().toString());
+    }
+
+    public static int getReadyCount(ServerWorld world) {
+        Pool pool = pools.get(world.getRegistryKey());
+        return pool != null ? pool.locations.size() : 0;
+    }
+
+    public static long getSearches() {
+        return searches;
+    }
+
+    public static long getRejected() {
+        return rejected;
+    }
+
+    public static void clear() {
+        pools.clear();
+    }
+
+    private static void search(ServerWorld world, Pool pool) {
+        EssentialsConfig config = EssentialsConfig.get();
+        BlockPos spawn = world.getSpawnPos();
+        int minRadius = Math.max(0, Math.min(config.rtpMinRadius, config.rtpRadius));
+        double angle = random.nextDouble() * Math.PI * 2;
+        // Uniform over the ring between the two radii rather than bunched towards the centre
+        double distance = Math.sqrt(minRadius * (double) minRadius
+            + random.nextDouble() * ((double) config.rtpRadius * config.rtpRadius - (double) minRadius * minRadius));
+        int x = (int) Math.floor(spawn.getX() + Math.cos(angle) * distance);
+        int z = (int) Math.floor(spawn.getZ() + Math.sin(angle) * distance);
+
+        searches++;
+        if (!world.getWorldBorder().contains(x + 0.5, z + 0.5)) {
+            rejected++;
+            return;
+        }
+
+        ChunkPos chunk = new ChunkPos(x >> 4, z >> 4);
+        // Radius 0 keeps the chunk loaded without ticking it; only the arrival ticket makes it tick
+        world.getChunkManager().addTicket(POOL_TICKET, chunk, 0, chunk);
+        pool.inFlight++;
+
+        MinecraftServer server = world.getServer();
+        CompletableFuture<Boolean> ready = world.getChunkManager().getChunkFutureSyncOnMainThread(chunk.x, chunk.z, ChunkStatus.FULL, true)
+            // findSafeSpot would load the chunk on the server thread if it came back unloaded
+            .thenApply(either -> either.left().isPresent())
+            .completeOnTimeout(false, SEARCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        ready.whenCompleteAsync((loaded, error) -> {
+            if (pools.get(world.getRegistryKey()) != pool) {
+                // The server stopped or restarted in the meantime
+                return;
+            }
+            pool.inFlight--;
+            if (error != null) {
+                error.printStackTrace();
+            }
+
+            BlockPos pos = error == null && loaded ? findSafeSpot(world, x, z) : null;
+            if (pos != null) {
+                pool.locations.addLast(pos);
+            } else {
+                rejected++;
+                world.getChunkManager().removeTicket(POOL_TICKET, chunk, 0, chunk);
+            }
+        }, server);
+    }
+
+    /**
+     * The position to stand on at the top of column x/z, or {@code null} if the ground there is
+     * liquid, harmful or missing, or there is no room for a player.
+     */
+    private static BlockPos findSafeSpot(ServerWorld world, int x, int z) {
+        int y = world.getTopY(Heightmap.Type.MOTION_BLOCKING, x, z);
+        if (y <= world.getBottomY() || y + 1 >= world.getTopY()) {
+            return null;
+        }
+
+        BlockPos feet = new BlockPos(x, y, z);
+        BlockState ground = world.getBlockState(feet.down());
+        if (!ground.isSolid() || !ground.getFluidState().isEmpty() || ground.isIn(BlockTags.FIRE) || ground.isIn(BlockTags.CAMPFIRES)
+            || ground.isOf(Blocks.MAGMA_BLOCK) || ground.isOf(Blocks.CACTUS)) {
+            return null;
+        }
+
+        for (BlockPos pos : new BlockPos[]{feet, feet.up()}) {
+            BlockState state = world.getBlockState(pos);
+            if (!state.getCollisionShape(world, pos).isEmpty() || !state.getFluidState().isEmpty()) {
+                return null;
+            }
+        }
+        return feet;
+    }
+}
@@ -0,0 +1,276 @@
+package com.essentialsforfabric.teleport;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pending /tpa and /tpahere requests. A request is resolved exactly once by a compare-and-set on
+ * its state, so accept, deny, cancel, expiry and disconnect can race without locking.
+ */
+public class TeleportRequestManager {
+    private static final int WHEEL_SLOTS = 256;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final int MAX_PENDING_PER_TARGET = 16;
+
+    private static final Map<UUID, Deque<TeleportRequest>> byTarget = new ConcurrentHashMap<>();
+    private static final Map<UUID, Deque<TeleportRequest>> byRequester = new ConcurrentHashMap<>();
+    private static final Queue<TeleportRequest>[] wheel = createWheel();
+    private static volatile long currentTick;
+
+    private static final int PENDING = 0;
+    private static final int RESOLVED = 1;
+
+    public enum Type {
+        // The requester teleports to the target
+        TPA,
+        // The target teleports to the requester
+        TPAHERE
+    }
+
+    public static class TeleportRequest {
+        public final UUID requester;
+        public final String requesterName;
+        public final UUID target;
+        public final String targetName;
+        public final Type type;
+        final long expiresAt;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        TeleportRequest(UUID requester, String requesterName, UUID target, String targetName, Type type, long expiresAt) {
+            this.requester = requester;
+            this.requesterName = requesterName;
+            this.target = target;
+            this.targetName = targetName;
+            this.type = type;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isPending() {
+            return state.get() == PENDING;
+        }
+
+        boolean resolve() {
+            return state.compareAndSet(PENDING, RESOLVED);
+        }
+    }
+
+    public enum SendResult {
+        SENT,
+        REPLACED,
+        TARGET_FULL
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Queue<TeleportRequest>[] createWheel() {
+        Queue<TeleportRequest>[] slots = new Queue[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        return slots;
+    }
+
+    /**
+     * Queues a request. A request from the same player to the same target replaces the old one.
+     */
+    public static SendResult send(ServerPlayerEntity requester, ServerPlayerEntity target, Type type) {
+        return send(requester.getUuid(), requester.getGameProfile().getName(), target.getUuid(), target.getGameProfile().getName(), type);
+    }
+
+    static SendResult send(UUID requesterId, String requesterName, UUID targetId, String targetName, Type type) {
+        boolean replaced = false;
+        TeleportRequest previous = find(byTarget.get(targetId), requesterId);
+        if (previous != null && previous.resolve()) {
+            unlink(previous);
+            replaced = true;
+        }
+
+        Deque<TeleportRequest> targetQueue = byTarget.computeIfAbsent(targetId, id -> new ConcurrentLinkedDeque<>());
+        if (targetQueue.size() >= MAX_PENDING_PER_TARGET) {
+            return SendResult.TARGET_FULL;
+        }
+
+        long timeout = Math.max(1, EssentialsConfig.get().tpaTimeoutTicks);
+        TeleportRequest request = new TeleportRequest(requesterId, requesterName, targetId, targetName, type, currentTick + timeout);
+        targetQueue.addLast(request);
+        byRequester.computeIfAbsent(request.requester, id -> new ConcurrentLinkedDeque<>()).addLast(request);
+        wheel[(int) (request.expiresAt & WHEEL_MASK)].add(request);
+
+        return replaced ? SendResult.REPLACED : SendResult.SENT;
+    }
+
+    /**
+     * Returns the request {@link #take} would resolve, leaving it pending.
+     */
+    public static TeleportRequest peek(UUID targetId, UUID requesterId) {
+        Deque<TeleportRequest> queue = byTarget.get(targetId);
+        if (queue == null) {
+            return null;
+        }
+
+        Iterator<TeleportRequest> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            TeleportRequest request = iterator.next();
+            if ((requesterId == null || request.requester.equals(requesterId)) && request.isPending()) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves and returns a pending request to {@code targetId}: the one from {@code requesterId},
+     * or the most recent one if that is {@code null}.
+     */
+    public static TeleportRequest take(UUID targetId, UUID requesterId) {
+        Deque<TeleportRequest> queue = byTarget.get(targetId);
+        if (queue == null) {
+            return null;
+        }
+
+        Iterator<TeleportRequest> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            TeleportRequest request = iterator.next();
+            if ((requesterId == null || request.requester.equals(requesterId)) && request.resolve()) {
+                unlink(request);
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Withdraws a request sent by {@code requesterId}: the one to {@code targetId}, or the most
+     * recent one if that is {@code null}.
+     */
+    public static TeleportRequest cancel(UUID requesterId, UUID targetId) {
+        Deque<TeleportRequest> queue = byRequester.get(requesterId);
+        if (queue == null) {
+            return null;
+        }
+
+        Iterator<TeleportRequest> iterator = queue.descendingIterator();
+        while (iterator.hasNext()) {
+            TeleportRequest request = iterator.next();
+            if ((targetId == null || request.target.equals(targetId)) && request.resolve()) {
+                unlink(request);
+                return request;
+            }
+        }
+        return null;
+    }
+
+    public static int getPendingCount(UUID targetId) {
+        Deque<TeleportRequest> queue = byTarget.get(targetId);
+        return queue != null ? queue.size() : 0;
+    }
+
+    public static void tick(MinecraftServer server) {
+        advance(server, server.getTicks());
+    }
+
+    /**
+     * Expires everything due up to tick {@code now}. The server is only used to tell players.
+     */
+    static void advance(MinecraftServer server, long now) {
+        // Catch up on every slot passed since the last call so nothing is skipped after a stall
+        for (long tick = currentTick + 1; tick <= now && tick <= currentTick + WHEEL_SLOTS; tick++) {
+            expireSlot(server, tick);
+        }
+        currentTick = now;
+    }
+
+    private static void expireSlot(MinecraftServer server, long tick) {
+        Iterator<TeleportRequest> iterator = wheel[(int) (tick & WHEEL_MASK)].iterator();
+        while (iterator.hasNext()) {
+            TeleportRequest request = iterator.next();
+            if (!request.isPending()) {
+                iterator.remove();
+            } else if (request.expiresAt <= tick) {
+                iterator.remove();
+                if (request.resolve()) {
+                    unlink(request);
+                    notify(server, request.requester, "Your teleport request to " + request.targetName + " has expired");
+                    notify(server, request.target, "The teleport request from " + request.requesterName + " has expired");
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every request the player sent or received, telling the other side.
+     */
+    public static void onDisconnect(MinecraftServer server, UUID playerId) {
+        Deque<TeleportRequest> received = byTarget.remove(playerId);
+        if (received != null) {
+            for (TeleportRequest request : received) {
+                if (request.resolve()) {
+                    unlink(request);
+                    notify(server, request.requester, request.targetName + " left, your teleport request was cancelled");
+                }
+            }
+        }
+
+        Deque<TeleportRequest> sent = byRequester.remove(playerId);
+        if (sent != null) {
+            for (TeleportRequest request : sent) {
+                if (request.resolve()) {
+                    unlink(request);
+                    notify(server, request.target, request.requesterName + " left, their teleport request was cancelled");
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        byTarget.clear();
+        byRequester.clear();
+        for (Queue<TeleportRequest> slot : wheel) {
+            slot.clear();
+        }
+        currentTick = 0;
+    }
+
+    private static TeleportRequest find(Deque<TeleportRequest> queue, UUID requesterId) {
+        if (queue == null) {
+            return null;
+        }
+        for (TeleportRequest request : queue) {
+            if (request.requester.equals(requesterId) && request.isPending()) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private static void unlink(TeleportRequest request) {
+        // The wheel entry is left behind and skipped when its slot comes round
+        Deque<TeleportRequest> targetQueue = byTarget.get(request.target);
+        if (targetQueue != null) {
+            targetQueue.remove(request);
+        }
+        Deque<TeleportRequest> requesterQueue = byRequester.get(request.requester);
+        if (requesterQueue != null) {
+            requesterQueue.remove(request);
+        }
+    }
+
+    private static void notify(MinecraftServer server, UUID playerId, String message) {
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(playerId);
+        if (player != null) {
+            player.sendMessage(Text.literal(message).formatted(Formatting.GRAY));
+        }
+    }
+}
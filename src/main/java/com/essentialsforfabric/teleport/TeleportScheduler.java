@@ -0,0 +1,239 @@
+package com.essentialsforfabric.teleport;
+
+import com.essentialsforfabric.config.EssentialsConfig;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs player teleports after a warmup and enforces a cooldown per command. Pending teleports sit
+ * in a two-level timing wheel, so a tick only touches the slots that are due.
+ */
+public class TeleportScheduler {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SLOTS = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final long WHEEL_SPAN = (long) WHEEL_SLOTS * WHEEL_SLOTS;
+    private static final double MOVE_TOLERANCE_SQUARED = 1.0;
+
+    private static final List<PendingTeleport>[] ticks = createSlots();
+    private static final List<PendingTeleport>[] spans = createSlots();
+    private static final List<PendingTeleport> overflow = new ArrayList<>();
+    private static final Map<UUID, PendingTeleport> pending = new HashMap<>();
+    private static final Map<String, Object2LongOpenHashMap<UUID>> cooldowns = new HashMap<>();
+    private static long currentTick;
+
+    private static class PendingTeleport {
+        final UUID playerId;
+        final String command;
+        final double x, y, z;
+        final long dueTick;
+        final Runnable action;
+        boolean cancelled;
+
+        PendingTeleport(ServerPlayerEntity player, String command, long dueTick, Runnable action) {
+            this.playerId = player.getUuid();
+            this.command = command;
+            this.x = player.getX();
+            this.y = player.getY();
+            this.z = player.getZ();
+            this.dueTick = dueTick;
+            this.action = action;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PendingTeleport>[] createSlots() {
+        List<PendingTeleport>[] slots = new List[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        return slots;
+    }
+
+    /**
+     * Teleports {@code player} by running {@code action}, now or after the configured warmup.
+     * Replaces any teleport the player already has pending.
+     *
+     * @return false if the player is still on cooldown for {@code command}
+     */
+    public static boolean schedule(ServerPlayerEntity player, String command, Runnable action) {
+        long remaining = getCooldownRemaining(player.getUuid(), command);
+        if (remaining > 0) {
+            player.sendMessage(Text.literal("You must wait " + formatSeconds(remaining) + " before using /" + command + " again").formatted(Formatting.RED));
+            return false;
+        }
+
+        PendingTeleport previous = pending.remove(player.getUuid());
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+
+        int warmup = EssentialsConfig.get().teleportWarmupTicks;
+        if (warmup <= 0) {
+            run(command, player, action);
+            return true;
+        }
+
+        PendingTeleport teleport = new PendingTeleport(player, command, currentTick + warmup, action);
+        pending.put(teleport.playerId, teleport);
+        file(teleport);
+        player.sendMessage(Text.literal("Teleporting in " + formatSeconds(warmup) + ", don't move").formatted(Formatting.GRAY));
+        return true;
+    }
+
+    public static long getCooldownRemaining(UUID playerId, String command) {
+        Object2LongOpenHashMap<UUID> readyAt = cooldowns.get(command);
+        return readyAt == null ? 0 : Math.max(0, readyAt.getLong(playerId) - currentTick);
+    }
+
+    public static boolean isPending(UUID playerId) {
+        return pending.containsKey(playerId);
+    }
+
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    public static void tick(MinecraftServer server) {
+        long now = server.getTicks();
+        while (currentTick < now) {
+            currentTick++;
+            if ((currentTick & WHEEL_MASK) == 0) {
+                if ((currentTick & (WHEEL_SPAN - 1)) == 0) {
+                    cascade(overflow);
+                }
+                cascade(spans[(int) ((currentTick >> WHEEL_BITS) & WHEEL_MASK)]);
+            }
+            fire(server, ticks[(int) (currentTick & WHEEL_MASK)]);
+        }
+    }
+
+    /**
+     * Called after every movement packet; cancels the player's warmup once they leave the spot
+     * it started on.
+     */
+    public static void onMove(ServerPlayerEntity player) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        PendingTeleport teleport = pending.get(player.getUuid());
+        if (teleport != null && hasMoved(teleport, player)) {
+            cancel(teleport, player, "Teleport cancelled because you moved");
+        }
+    }
+
+    public static void onDamage(ServerPlayerEntity player) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        PendingTeleport teleport = pending.get(player.getUuid());
+        if (teleport != null) {
+            cancel(teleport, player, "Teleport cancelled because you took damage");
+        }
+    }
+
+    public static void onDisconnect(UUID playerId) {
+        PendingTeleport teleport = pending.remove(playerId);
+        if (teleport != null) {
+            teleport.cancelled = true;
+        }
+
+        // Expired cooldowns would otherwise pile up for every player who ever joined
+        for (Object2LongOpenHashMap<UUID> readyAt : cooldowns.values()) {
+            if (readyAt.containsKey(playerId) && readyAt.getLong(playerId) <= currentTick) {
+                readyAt.removeLong(playerId);
+            }
+        }
+    }
+
+    public static void clear() {
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            ticks[i].clear();
+            spans[i].clear();
+        }
+        overflow.clear();
+        pending.clear();
+        cooldowns.clear();
+        currentTick = 0;
+    }
+
+    private static void file(PendingTeleport teleport) {
+        long delay = teleport.dueTick - currentTick;
+        if (delay < WHEEL_SLOTS) {
+            ticks[(int) (Math.max(teleport.dueTick, currentTick) & WHEEL_MASK)].add(teleport);
+        } else if (delay < WHEEL_SPAN) {
+            spans[(int) ((teleport.dueTick >> WHEEL_BITS) & WHEEL_MASK)].add(teleport);
+        } else {
+            overflow.add(teleport);
+        }
+    }
+
+    private static void cascade(List<PendingTeleport> slot) {
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<PendingTeleport> moved = new ArrayList<>(slot);
+        slot.clear();
+        for (PendingTeleport teleport : moved) {
+            if (!teleport.cancelled) {
+                file(teleport);
+            }
+        }
+    }
+
+    private static void fire(MinecraftServer server, List<PendingTeleport> slot) {
+        if (slot.isEmpty()) {
+            return;
+        }
+        List<PendingTeleport> due = new ArrayList<>(slot);
+        slot.clear();
+        for (PendingTeleport teleport : due) {
+            if (teleport.cancelled || !pending.remove(teleport.playerId, teleport)) {
+                continue;
+            }
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(teleport.playerId);
+            if (player == null) {
+                continue;
+            }
+            if (hasMoved(teleport, player)) {
+                player.sendMessage(Text.literal("Teleport cancelled because you moved").formatted(Formatting.RED));
+                continue;
+            }
+            run(teleport.command, player, teleport.action);
+        }
+    }
+
+    private static void run(String command, ServerPlayerEntity player, Runnable action) {
+        action.run();
+        int cooldown = EssentialsConfig.get().teleportCooldownTicks;
+        if (cooldown > 0) {
+            cooldowns.computeIfAbsent(command, name -> new Object2LongOpenHashMap<>()).put(player.getUuid(), currentTick + cooldown);
+        }
+    }
+
+    private static void cancel(PendingTeleport teleport, ServerPlayerEntity player, String message) {
+        teleport.cancelled = true;
+        pending.remove(teleport.playerId);
+        player.sendMessage(Text.literal(message).formatted(Formatting.RED));
+    }
+
+    private static boolean hasMoved(PendingTeleport teleport, ServerPlayerEntity player) {
+        double dx = player.getX() - teleport.x;
+        double dy = player.getY() - teleport.y;
+        double dz = player.getZ() - teleport.z;
+        return dx * dx + dy * dy + dz * dz > MOVE_TOLERANCE_SQUARED;
+    }
+
+    public static String formatSeconds(long ticks) {
+        return String.format("%.1fs", ticks / 20.0);
+    }
+}
@@ -0,0 +1,17 @@
+package com.essentialsforfabric.util;
+
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Resolves nodes through fabric-permissions-api, which LuckPerms and most other permission mods
+ * implement. Only loaded when that mod is present.
+ */
+public class FabricPermissionsProvider implements PermissionProvider {
+    public static final String MOD_ID = "fabric-permissions-api-v0";
+
+    @Override
+    public boolean check(ServerPlayerEntity player, String permission, int defaultLevel) {
+        return Permissions.check(player, permission, defaultLevel);
+    }
+}
@@ -0,0 +1,12 @@
+package com.essentialsforfabric.util;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Bridge to an external permissions system. Answers are cached by {@link PermissionUtil}, so
+ * implementations should call {@link PermissionUtil#invalidate} when a player's permissions change.
+ */
+@FunctionalInterface
+public interface PermissionProvider {
+    boolean check(ServerPlayerEntity player, String permission, int defaultLevel);
+}
@@ -1,119 +1,222 @@
 package com.essentialsforfabric.util;
 
+import com.essentialsforfabric.config.EssentialsConfig;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Resolves essentials permission nodes, compiled into integer ids when commands are registered.
+ * Permissions mod answers are cached per player until their op level changes or they leave.
+ */
 public class PermissionUtil {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] nodes = new String[0];
+    private static volatile int[] levels = new int[0];
+    private static final Map<UUID, PermissionSet> cache = new ConcurrentHashMap<>();
+    private static volatile PermissionProvider provider;
+    private static int ticksSinceRefresh;
+
+    private static final LongAdder checks = new LongAdder();
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder providerLookups = new LongAdder();
+
+    static {
+        register("essentials.heal", 2);
+        register("essentials.heal.others", 2);
+        register("essentials.feed", 2);
+        register("essentials.feed.others", 2);
+        register("essentials.fly", 2);
+        register("essentials.fly.others", 2);
+        register("essentials.god", 2);
+        register("essentials.god.others", 2);
+        register("essentials.speed", 2);
+        register("essentials.speed.others", 2);
+        register("essentials.gamemode", 2);
+        register("essentials.gamemode.others", 2);
+        register("essentials.teleport", 2);
+        register("essentials.teleport.others", 2);
+        register("essentials.spawn", 1);
+        register("essentials.spawn.others", 2);
+        register("essentials.repair", 2);
+        register("essentials.repair.others", 2);
+        register("essentials.home", 0);
+        register("essentials.home.others", 2);
+        register("essentials.sethome", 0);
+        register("essentials.back", 0);
+        register("essentials.warp", 0);
+        register("essentials.setwarp", 2);
+        register("essentials.delwarp", 2);
+        register("essentials.kit", 0);
+        register("essentials.afk", 0);
+        register("essentials.afk.kickexempt", 2);
+        register("essentials.kit.others", 2);
+    }
+
+    /**
+     * Compiles a node into an id. Nodes that are already known keep their id and default level.
+     */
+    public static synchronized int register(String permission, int defaultLevel) {
+        Integer existing = ids.get(permission);
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = nodes.length;
+        String[] newNodes = Arrays.copyOf(nodes, id + 1);
+        int[] newLevels = Arrays.copyOf(levels, id + 1);
+        newNodes[id] = permission;
+        newLevels[id] = defaultLevel;
+        levels = newLevels;
+        nodes = newNodes;
+        ids.put(permission, id);
+
+        // Cached bitsets were sized for the old node count
+        cache.clear();
+        return id;
+    }
+
+    /**
+     * A {@code requires} predicate for a command node, compiled once at registration.
+     */
+    public static Predicate<ServerCommandSource> require(String permission, int defaultLevel) {
+        int id = register(permission, defaultLevel);
+        return source -> hasPermission(source, id, defaultLevel);
+    }
 
     public static boolean hasPermission(ServerCommandSource source, String permission) {
         return hasPermission(source, permission, 2);
     }
 
     public static boolean hasPermission(ServerCommandSource source, String permission, int defaultLevel) {
+        Integer id = ids.get(permission);
+        return hasPermission(source, id != null ? id : register(permission, defaultLevel), defaultLevel);
+    }
+
+    public static boolean hasPermission(ServerCommandSource source, int id) {
+        return hasPermission(source, id, levels[id]);
+    }
+
+    /**
+     * @param defaultLevel the op level required from sources that aren't players, such as the console
+     */
+    public static boolean hasPermission(ServerCommandSource source, int id, int defaultLevel) {
+        checks.increment();
         if (source.hasPermissionLevel(4)) {
             return true;
         }
 
-        try {
-            ServerPlayerEntity player = source.getPlayerOrThrow();
-
-            switch (permission) {
-                case "essentials.heal" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.heal.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.feed" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.feed.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.fly" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.fly.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.god" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.god.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.speed" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.speed.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.gamemode" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.gamemode.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.teleport" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.teleport.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.spawn" -> {
-                    return source.hasPermissionLevel(1);
-                }
-                case "essentials.spawn.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.give" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.give.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.repair" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.repair.others" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.time" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.weather" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.home" -> {
-                    return source.hasPermissionLevel(0);
-                }
-                case "essentials.sethome" -> {
-                    return source.hasPermissionLevel(0);
-                }
-                case "essentials.back" -> {
-                    return source.hasPermissionLevel(0);
-                }
-                case "essentials.warp" -> {
-                    return source.hasPermissionLevel(0);
-                }
-                case "essentials.setwarp" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.delwarp" -> {
-                    return source.hasPermissionLevel(2);
-                }
-                case "essentials.kick" -> {
-                    return source.hasPermissionLevel(3);
-                }
-                case "essentials.ban" -> {
-                    return source.hasPermissionLevel(3);
-                }
-                default -> {
-                    return source.hasPermissionLevel(defaultLevel);
-                }
-            }
-        } catch (Exception e) {
+        if (!(source.getEntity() instanceof ServerPlayerEntity player)) {
             return source.hasPermissionLevel(defaultLevel);
         }
+        PermissionProvider current = provider;
+        if (current == null) {
+            return source.hasPermissionLevel(levels[id]);
+        }
+
+        PermissionSet permissions = cache.get(player.getUuid());
+        if (permissions == null) {
+            permissions = new PermissionSet(nodes.length);
+            cache.put(player.getUuid(), permissions);
+        } else if (permissions.isResolved(id)) {
+            cacheHits.increment();
+            return permissions.isGranted(id);
+        }
+
+        providerLookups.increment();
+        boolean granted = current.check(player, nodes[id], levels[id]);
+        permissions.set(id, granted);
+        return granted;
+    }
+
+    /**
+     * Installs a bridge to an external permissions API, or removes it with {@code null}.
+     */
+    public static void setProvider(PermissionProvider permissionProvider) {
+        provider = permissionProvider;
+        cache.clear();
+    }
+
+    public static PermissionProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Drops the cached permissions of one player, e.g. after their op level or groups changed.
+     */
+    public static void invalidate(UUID playerId) {
+        cache.remove(playerId);
+    }
+
+    public static void invalidateAll() {
+        cache.clear();
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (++ticksSinceRefresh < Math.max(1, EssentialsConfig.get().permissionCacheTicks)) {
+            return;
+        }
+        ticksSinceRefresh = 0;
+        cache.clear();
+    }
+
+    public static int getNodeCount() {
+        return nodes.length;
+    }
+
+    public static int getCachedPlayerCount() {
+        return cache.size();
+    }
+
+    public static long getChecks() {
+        return checks.sum();
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public static long getProviderLookups() {
+        return providerLookups.sum();
+    }
+
+    private static class PermissionSet {
+        private final long[] resolved;
+        private final long[] granted;
+
+        PermissionSet(int nodeCount) {
+            int words = (nodeCount + 63) >>> 6;
+            this.resolved = new long[words];
+            this.granted = new long[words];
+        }
+
+        boolean isResolved(int id) {
+            int word = id >>> 6;
+            return word < resolved.length && (resolved[word] & (1L << id)) != 0;
+        }
+
+        boolean isGranted(int id) {
+            return (granted[id >>> 6] & (1L << id)) != 0;
+        }
+
+        void set(int id, boolean value) {
+            int word = id >>> 6;
+            if (word >= resolved.length) {
+                return;
+            }
+            resolved[word] |= 1L << id;
+            if (value) {
+                granted[word] |= 1L << id;
+            } else {
+                granted[word] &= ~(1L << id);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.essentialsforfabric.util;
+
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chat listing split into pages, each rendered once and reused until the entries change.
+ */
+public class TextPages {
+    private final List<Text> pages;
+    private final int lineCount;
+    private final int pageSize;
+
+    public TextPages(String title, List<? extends Text> lines, int pageSize, String command) {
+        this.lineCount = lines.size();
+        this.pageSize = Math.max(1, pageSize);
+
+        int pageCount = Math.max(1, (lineCount + this.pageSize - 1) / this.pageSize);
+        this.pages = new ArrayList<>(pageCount);
+        for (int page = 1; page <= pageCount; page++) {
+            MutableText text = Text.literal(title + " (" + lineCount + ")")
+                .append(Text.literal(pageCount > 1 ? " - page " + page + "/" + pageCount : "").formatted(Formatting.GRAY))
+                .append(Text.literal(":"));
+
+            int end = Math.min(lineCount, page * this.pageSize);
+            for (int line = (page - 1) * this.pageSize; line < end; line++) {
+                text.append(Text.literal("\n")).append(lines.get(line));
+            }
+
+            if (pageCount > 1) {
+                text.append(Text.literal("\n")).append(navigation(page, pageCount, command));
+            }
+            pages.add(text);
+        }
+    }
+
+    private static MutableText navigation(int page, int pageCount, String command) {
+        MutableText text = Text.literal(" ");
+        if (page > 1) {
+            text.append(link("[< Prev]", command + " " + (page - 1)));
+        } else {
+            text.append(Text.literal("[< Prev]").formatted(Formatting.DARK_GRAY));
+        }
+        text.append(Text.literal("  "));
+        if (page < pageCount) {
+            text.append(link("[Next >]", command + " " + (page + 1)));
+        } else {
+            text.append(Text.literal("[Next >]").formatted(Formatting.DARK_GRAY));
+        }
+        return text;
+    }
+
+    private static MutableText link(String label, String command) {
+        return Text.literal(label)
+            .styled(style -> style
+                .withColor(Formatting.GOLD)
+                .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, command))
+                .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, Text.literal(command))));
+    }
+
+    /**
+     * @param page 1-based page number
+     * @return the rendered page, or {@code null} if there is no such page
+     */
+    public Text getPage(int page) {
+        return page >= 1 && page <= pages.size() ? pages.get(page - 1) : null;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,84 @@
+package com.essentialsforfabric.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JournalRecordTest {
+    @Test
+    public void supersedesOnlySameKey() {
+        assertTrue(JournalRecord.deleteHome("a").supersedes(home("a", 1)));
+        assertTrue(home("a", 2).supersedes(JournalRecord.deleteHome("a")));
+        assertFalse(home("b", 1).supersedes(home("a", 1)));
+        assertFalse(JournalRecord.deleteWarp("a").supersedes(home("a", 1)));
+        assertFalse(home("a", 1).supersedes(warp("a", 1)));
+        assertTrue(JournalRecord.setBackHistory(new LocationHistory(2)).supersedes(JournalRecord.setLastLocation(location(1))));
+        assertFalse(JournalRecord.setLastLocation(location(1)).supersedes(JournalRecord.setBackHistory(new LocationHistory(2))));
+    }
+
+    @Test
+    public void coalescingKeepsLatestRecordPerKeyInArrivalOrder() {
+        JournalRecord homeA = home("a", 1);
+        JournalRecord homeB = home("b", 2);
+        JournalRecord last = JournalRecord.setLastLocation(location(3));
+        JournalRecord deleteA = JournalRecord.deleteHome("a");
+        JournalRecord homeB2 = home("b", 4);
+
+        List<JournalRecord> pending = new ArrayList<>();
+        for (JournalRecord record : List.of(homeA, homeB, last, deleteA, homeB2)) {
+            PersistenceQueue.addCoalesced(pending, record);
+        }
+
+        assertEquals(3, pending.size());
+        assertSame(last, pending.get(0));
+        assertSame(deleteA, pending.get(1));
+        assertSame(homeB2, pending.get(2));
+    }
+
+    @Test
+    public void coalescedRecordsApplyLikeTheFullSequence() {
+        List<JournalRecord> records = List.of(
+            home("a", 1),
+            JournalRecord.setLastLocation(location(2)),
+            home("b", 3),
+            JournalRecord.deleteHome("a"),
+            home("a", 5),
+            JournalRecord.setLastLocation(location(6)),
+            JournalRecord.deleteHome("b")
+        );
+
+        PlayerDataManager.PlayerData full = new PlayerDataManager.PlayerData();
+        List<JournalRecord> pending = new ArrayList<>();
+        for (JournalRecord record : records) {
+            record.applyTo(full);
+            PersistenceQueue.addCoalesced(pending, record);
+        }
+        PlayerDataManager.PlayerData coalesced = new PlayerDataManager.PlayerData();
+        pending.forEach(record -> record.applyTo(coalesced));
+
+        assertEquals(3, pending.size());
+        assertEquals(full.homes.keySet(), coalesced.homes.keySet());
+        assertEquals(5, coalesced.homes.get("a").x);
+        assertNull(coalesced.homes.get("b"));
+        assertEquals(full.lastLocation.x, coalesced.lastLocation.x);
+    }
+
+    private static JournalRecord home(String name, double x) {
+        return JournalRecord.setHome(name, location(x));
+    }
+
+    private static JournalRecord warp(String name, double x) {
+        return JournalRecord.setWarp(name, location(x));
+    }
+
+    private static PlayerDataManager.LocationData location(double x) {
+        return new PlayerDataManager.LocationData("minecraft:overworld", x, 64, 0, 0, 0);
+    }
+}
@@ -0,0 +1,105 @@
+package com.essentialsforfabric.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replaysRecordsInOrder() throws IOException {
+        Path journal = directory.resolve("player.journal");
+        Journal.append(journal, List.of(home("a", 1), home("b", 2)));
+        Journal.append(journal, List.of(JournalRecord.deleteHome("a")));
+
+        List<JournalRecord> replayed = replay(journal);
+
+        assertEquals(3, replayed.size());
+        assertEquals(JournalRecord.Type.SET_HOME, replayed.get(0).type);
+        assertEquals("b", replayed.get(1).name);
+        assertEquals(JournalRecord.Type.DEL_HOME, replayed.get(2).type);
+    }
+
+    @Test
+    public void missingJournalReplaysNothing() throws IOException {
+        assertEquals(0, Journal.replay(directory.resolve("missing.journal"), record -> {}));
+    }
+
+    @Test
+    public void truncatedTailIsSkipped() throws IOException {
+        Path journal = directory.resolve("player.journal");
+        Journal.append(journal, List.of(home("a", 1), home("b", 2)));
+        long intact = Files.size(journal);
+        Journal.append(journal, List.of(home("c", 3)));
+        truncate(journal, intact + 11);
+
+        List<JournalRecord> replayed = replay(journal);
+
+        assertEquals(2, replayed.size());
+        assertEquals("b", replayed.get(1).name);
+        assertEquals(intact + 11, Files.size(journal));
+    }
+
+    @Test
+    public void corruptTailIsSkippedWithoutRewriting() throws IOException {
+        Path journal = directory.resolve("player.journal");
+        Journal.append(journal, List.of(home("a", 1), home("b", 2)));
+        Journal.append(journal, List.of(home("c", 3)));
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(journal, bytes);
+        Journal.forget(journal);
+
+        List<JournalRecord> replayed = replay(journal);
+
+        assertEquals(2, replayed.size());
+        assertEquals("b", replayed.get(1).name);
+        assertArrayEquals(bytes, Files.readAllBytes(journal));
+    }
+
+    @Test
+    public void appendCutsOffTornTail() throws IOException {
+        Path journal = directory.resolve("player.journal");
+        Journal.append(journal, List.of(home("a", 1)));
+        long intact = Files.size(journal);
+        Journal.append(journal, List.of(home("b", 2)));
+        truncate(journal, intact + 5);
+
+        Journal.append(journal, List.of(home("c", 3)));
+        List<JournalRecord> replayed = replay(journal);
+
+        assertEquals(2, replayed.size());
+        assertEquals("a", replayed.get(0).name);
+        assertEquals("c", replayed.get(1).name);
+    }
+
+    private static JournalRecord home(String name, double x) {
+        return JournalRecord.setHome(name, new PlayerDataManager.LocationData("minecraft:overworld", x, 64, 0, 0, 0));
+    }
+
+    private static List<JournalRecord> replay(Path journal) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        Journal.replay(journal, records::add);
+        return records;
+    }
+
+    private static void truncate(Path journal, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+        // Simulates a crash, so the cached length from this process doesn't apply
+        Journal.forget(journal);
+    }
+}
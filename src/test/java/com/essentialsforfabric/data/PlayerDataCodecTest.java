@@ -0,0 +1,123 @@
+package com.essentialsforfabric.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PlayerDataCodecTest {
+    @Test
+    public void binaryPlayerDataRoundTrip() throws IOException {
+        assertPlayerDataRoundTrip(PlayerDataCodec.BINARY);
+    }
+
+    @Test
+    public void jsonPlayerDataRoundTrip() throws IOException {
+        assertPlayerDataRoundTrip(PlayerDataCodec.JSON);
+    }
+
+    @Test
+    public void binaryWarpsRoundTrip() throws IOException {
+        assertWarpsRoundTrip(PlayerDataCodec.BINARY);
+    }
+
+    @Test
+    public void jsonWarpsRoundTrip() throws IOException {
+        assertWarpsRoundTrip(PlayerDataCodec.JSON);
+    }
+
+    @Test
+    public void binaryEmptyPlayerDataRoundTrip() throws IOException {
+        PlayerDataManager.PlayerData decoded = PlayerDataCodec.BINARY.decodePlayerData(
+            PlayerDataCodec.BINARY.encodePlayerData(new PlayerDataManager.PlayerData()));
+
+        assertEquals(0, decoded.homes.size());
+        assertNull(decoded.lastLocation);
+        assertNull(decoded.backHistory);
+        assertNull(decoded.kitCooldowns);
+    }
+
+    @Test
+    public void binaryRejectsWarpsAsPlayerData() throws IOException {
+        byte[] warps = PlayerDataCodec.BINARY.encodeWarps(new LinkedHashMap<>());
+        assertThrows(IOException.class, () -> PlayerDataCodec.BINARY.decodePlayerData(warps));
+    }
+
+    @Test
+    public void binaryRejectsTruncatedData() throws IOException {
+        byte[] bytes = PlayerDataCodec.BINARY.encodePlayerData(createPlayerData());
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> PlayerDataCodec.BINARY.decodePlayerData(truncated));
+    }
+
+    private static void assertPlayerDataRoundTrip(PlayerDataCodec codec) throws IOException {
+        PlayerDataManager.PlayerData data = createPlayerData();
+        PlayerDataManager.PlayerData decoded = codec.decodePlayerData(codec.encodePlayerData(data));
+
+        assertEquals(data.homes.size(), decoded.homes.size());
+        for (Map.Entry<String, PlayerDataManager.LocationData> home : data.homes.entrySet()) {
+            assertLocationEquals(home.getValue(), decoded.homes.get(home.getKey()));
+        }
+        assertLocationEquals(data.lastLocation, decoded.lastLocation);
+
+        assertNotNull(decoded.backHistory);
+        assertEquals(data.backHistory.size(), decoded.backHistory.size());
+        for (int i = 0; i < data.backHistory.size(); i++) {
+            assertEquals(data.backHistory.getKind(i), decoded.backHistory.getKind(i));
+            assertLocationEquals(data.backHistory.get(i), decoded.backHistory.get(i));
+        }
+
+        assertNotNull(decoded.kitCooldowns);
+        assertEquals(2, decoded.kitCooldowns.size());
+        assertEquals(5_000L, decoded.kitCooldowns.getReadyAt("tools"));
+        assertEquals(KitCooldowns.NEVER, decoded.kitCooldowns.getReadyAt("starter"));
+    }
+
+    private static void assertWarpsRoundTrip(PlayerDataCodec codec) throws IOException {
+        Map<String, PlayerDataManager.WarpData> warps = new LinkedHashMap<>();
+        warps.put("spawn", new PlayerDataManager.WarpData("minecraft:overworld", 0.5, 64, 0.5, 0, 0));
+        warps.put("fortress", new PlayerDataManager.WarpData("minecraft:the_nether", -120.25, 48, 33.75, 90, -15.5f));
+        warps.put("stronghold", new PlayerDataManager.WarpData("minecraft:overworld", 1024, 20, -2048, 180, 10));
+
+        Map<String, PlayerDataManager.WarpData> decoded = codec.decodeWarps(codec.encodeWarps(warps));
+
+        assertEquals(warps.size(), decoded.size());
+        for (Map.Entry<String, PlayerDataManager.WarpData> warp : warps.entrySet()) {
+            assertLocationEquals(warp.getValue(), decoded.get(warp.getKey()));
+        }
+    }
+
+    private static PlayerDataManager.PlayerData createPlayerData() {
+        PlayerDataManager.PlayerData data = new PlayerDataManager.PlayerData();
+        data.homes.put("home", new PlayerDataManager.LocationData("minecraft:overworld", 10.5, 70, -3.25, 45, 12.5f));
+        data.homes.put("base", new PlayerDataManager.LocationData("minecraft:the_nether", -80, 32, 16, -90, 0));
+        data.homes.put("\u00fcberhaus", new PlayerDataManager.LocationData("custom:mining", 1e6, -60, -1e6, 359.9f, -90));
+        data.lastLocation = new PlayerDataManager.LocationData("minecraft:the_end", 100, 50, 0, 0, 30);
+
+        data.backHistory = new LocationHistory(3);
+        data.backHistory.push(LocationHistory.TELEPORT, "minecraft:overworld", 1, 2, 3, 4, 5);
+        data.backHistory.push(LocationHistory.DEATH, "minecraft:the_nether", 6, 7, 8, 9, 10);
+
+        data.kitCooldowns = new KitCooldowns();
+        data.kitCooldowns.set("tools", 5_000L, 0L);
+        data.kitCooldowns.set("starter", KitCooldowns.NEVER, 0L);
+        return data;
+    }
+
+    private static void assertLocationEquals(PlayerDataManager.LocationData expected, PlayerDataManager.LocationData actual) {
+        assertNotNull(actual);
+        assertEquals(expected.world, actual.world);
+        assertEquals(expected.x, actual.x);
+        assertEquals(expected.y, actual.y);
+        assertEquals(expected.z, actual.z);
+        assertEquals(expected.yaw, actual.yaw);
+        assertEquals(expected.pitch, actual.pitch);
+    }
+}